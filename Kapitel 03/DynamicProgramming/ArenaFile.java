@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact binary arena format for very large grid worlds. The file is read through a memory-mapped ByteBuffer,
+ * so maps with millions of tiles can be used without String literals and without Greenfoot actors.
+ *
+ * Layout (big endian):
+ *   0  int   magic "RLGA"
+ *   4  int   version (1)
+ *   8  int   width
+ *  12  int   height
+ *  16  int   start X of the hamster
+ *  20  int   start Y of the hamster
+ *  24  int   number of grain tiles
+ *  28  int   reserved
+ *  32  byte  width*height map elements, row by row ('0','M','F','1','2','3', see RL_GridEnv)
+ *  ..  int[3] x, y and number of grains for each grain tile
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class ArenaFile
+{
+    public static final int MAGIC = 0x524C4741; // "RLGA"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    private final ByteBuffer buffer;
+    private final int width;
+    private final int height;
+    private final int startX;
+    private final int startY;
+    private final int numberOfGrains;
+
+    /**
+     * Wraps a buffer with the content of an arena file.
+     * @param buffer buffer positioned anywhere, the arena starts at index 0
+     * @throws IOException if the buffer does not contain a valid arena
+     */
+    public ArenaFile(ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+        if ((buffer.capacity()<HEADER_SIZE)||(buffer.getInt(0)!=MAGIC)){
+            throw new IOException("no arena file (magic number missing)");
+        }
+        if (buffer.getInt(4)!=VERSION){
+            throw new IOException("unsupported arena file version "+buffer.getInt(4));
+        }
+        width = buffer.getInt(8);
+        height = buffer.getInt(12);
+        startX = buffer.getInt(16);
+        startY = buffer.getInt(20);
+        numberOfGrains = buffer.getInt(24);
+        long size = HEADER_SIZE+(long)width*height+12L*numberOfGrains;
+        if ((width<=0)||(height<=0)||(buffer.capacity()<size)){
+            throw new IOException("arena file is truncated");
+        }
+    }
+
+    /**
+     * Opens an arena file as memory-mapped buffer (read only).
+     * @param fileName path of the arena file
+     * @return arena
+     * @throws IOException if the file can not be read or is no arena file
+     */
+    public static ArenaFile open(String fileName) throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(fileName,"r");
+             FileChannel channel = file.getChannel()){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+            return new ArenaFile(buffer);
+        }
+    }
+
+    /**
+     * Writes an arena file.
+     * @param fileName path of the arena file
+     * @param width number of columns
+     * @param height number of rows
+     * @param cells map elements row by row (length width*height)
+     * @param startX start column of the hamster
+     * @param startY start row of the hamster
+     * @throws IOException if the file can not be written
+     */
+    public static void write(String fileName, int width, int height, byte[] cells, int startX, int startY) throws IOException
+    {
+        int grains=0;
+        for (byte c : cells) if ((c>='1')&&(c<='9')) grains++;
+        long size = HEADER_SIZE+(long)cells.length+12L*grains;
+        try (RandomAccessFile file = new RandomAccessFile(fileName,"rw");
+             FileChannel channel = file.getChannel()){
+            file.setLength(size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,0,size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+            buffer.putInt(startX).putInt(startY).putInt(grains).putInt(0);
+            buffer.put(cells);
+            for (int i=0;i<cells.length;i++){
+                if ((cells[i]>='1')&&(cells[i]<='9')){
+                    buffer.putInt(i%width).putInt(i/width).putInt(cells[i]-'0');
+                }
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Converts a field description (as in RL_GridEnv) into the cell array of an arena file.
+     * @param fieldDescription map of the arena
+     * @return map elements row by row, 'H' is stored as free tile
+     */
+    public static byte[] cellsOf(String[] fieldDescription)
+    {
+        int width = fieldDescription[0].length();
+        byte[] cells = new byte[fieldDescription.length*width];
+        for (int y=0;y<fieldDescription.length;y++){
+            for (int x=0;x<width;x++){
+                char c = fieldDescription[y].charAt(x);
+                cells[y*width+x] = (byte)((c=='H') ? '0' : c);
+            }
+        }
+        return cells;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public int getStartX()
+    {
+        return startX;
+    }
+
+    public int getStartY()
+    {
+        return startY;
+    }
+
+    public int getNumberOfGrains()
+    {
+        return numberOfGrains;
+    }
+
+    /**
+     * Returns the map element of a tile.
+     * @param x column
+     * @param y row
+     * @return map element ('0','M','F','1','2','3')
+     */
+    public char getElementAt(int x, int y)
+    {
+        return (char)buffer.get(HEADER_SIZE+y*width+x);
+    }
+
+    /**
+     * Returns the position and number of a grain tile from the metadata.
+     * @param i index of the grain tile
+     * @return {x, y, number of grains}
+     */
+    public int[] getGrain(int i)
+    {
+        int p = HEADER_SIZE+width*height+12*i;
+        return new int[]{buffer.getInt(p),buffer.getInt(p+4),buffer.getInt(p+8)};
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator for large arenas (mazes and room layouts) of configurable size. The arenas are written as arena
+ * files (see ArenaFile), so they can be loaded memory-mapped by RL_GridEnv and compiled into a CompiledMDP
+ * without String literals in the source code.
+ *
+ * Example: ArenaGenerator.main(new String[]{"maze","1001","1001","42","maze.arena"});
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class ArenaGenerator
+{
+    public static double TRAP_DENSITY = 0.002; // share of the free tiles that become traps
+
+    private static final byte FREE = '0';
+    private static final byte WALL = 'M';
+    private static final byte GRAIN = '1';
+    private static final byte TRAP = 'F';
+
+    /**
+     * Generates a maze with the "recursive backtracker" (depth first search with an explicit stack). Cells
+     * lie on odd coordinates, the tiles in between are walls or passages. The hamster starts at (1,1), the
+     * grain is placed on the cell that is farthest away along the maze.
+     * @param width number of columns (should be odd)
+     * @param height number of rows (should be odd)
+     * @param seed seed of the random generator
+     * @return map elements row by row
+     */
+    public static byte[] maze(int width, int height, long seed)
+    {
+        Random random = new Random(seed);
+        byte[] cells = new byte[width*height];
+        Arrays.fill(cells,WALL);
+        int cw = (width-1)/2;  // number of maze cells per row
+        int ch = (height-1)/2; // number of maze cells per column
+        int[] depth = new int[cw*ch];
+        Arrays.fill(depth,-1);
+        int[] stack = new int[cw*ch];
+        int sp = 0;
+        int[] dirs = new int[4];
+        stack[sp++]=0;
+        depth[0]=0;
+        cells[1*width+1]=FREE;
+        int farthest=0;
+        while (sp>0){
+            int c = stack[sp-1];
+            int cx = c%cw, cy = c/cw;
+            int n=0;
+            for (int k=0;k<4;k++){
+                int nx = cx+RL_GridEnv.neighborStates[k][0];
+                int ny = cy+RL_GridEnv.neighborStates[k][1];
+                if ((nx>=0)&&(nx<cw)&&(ny>=0)&&(ny<ch)&&(depth[ny*cw+nx]<0)) dirs[n++]=k;
+            }
+            if (n==0){
+                sp--;
+                continue;
+            }
+            int k = dirs[random.nextInt(n)];
+            int nx = cx+RL_GridEnv.neighborStates[k][0];
+            int ny = cy+RL_GridEnv.neighborStates[k][1];
+            int next = ny*cw+nx;
+            depth[next]=depth[c]+1;
+            if (depth[next]>depth[farthest]) farthest=next;
+            cells[(2*cy+1+RL_GridEnv.neighborStates[k][1])*width+(2*cx+1+RL_GridEnv.neighborStates[k][0])]=FREE;
+            cells[(2*ny+1)*width+(2*nx+1)]=FREE;
+            stack[sp++]=next;
+        }
+        cells[(2*(farthest/cw)+1)*width+(2*(farthest%cw)+1)]=GRAIN;
+        return cells;
+    }
+
+    /**
+     * Generates a layout of rooms on a regular grid. Neighbouring rooms are connected by doors at random
+     * positions of the separating wall, some traps are scattered over the floor. The hamster starts at (1,1),
+     * the grain lies in the opposite corner.
+     * @param width number of columns
+     * @param height number of rows
+     * @param roomSize inner side length of a room
+     * @param seed seed of the random generator
+     * @return map elements row by row
+     */
+    public static byte[] rooms(int width, int height, int roomSize, long seed)
+    {
+        Random random = new Random(seed);
+        byte[] cells = new byte[width*height];
+        int step = roomSize+1;
+        for (int y=0;y<height;y++){
+            for (int x=0;x<width;x++){
+                boolean border = (x==0)||(y==0)||(x==width-1)||(y==height-1);
+                cells[y*width+x] = (border||(x%step==0)||(y%step==0)) ? WALL : FREE;
+            }
+        }
+        // doors in the vertical walls
+        for (int x=step;x<width-1;x+=step){
+            for (int y0=1;y0<height-1;y0+=step){
+                int h = Math.min(roomSize,height-1-y0);
+                cells[(y0+random.nextInt(h))*width+x]=FREE;
+            }
+        }
+        // doors in the horizontal walls
+        for (int y=step;y<height-1;y+=step){
+            for (int x0=1;x0<width-1;x0+=step){
+                int w = Math.min(roomSize,width-1-x0);
+                cells[y*width+x0+random.nextInt(w)]=FREE;
+            }
+        }
+        for (int i=0;i<cells.length;i++){
+            if ((cells[i]==FREE)&&(random.nextDouble()<TRAP_DENSITY)) cells[i]=TRAP;
+        }
+        cells[1*width+1]=FREE;
+        int gx = width-2, gy = height-2;
+        while (cells[gy*width+gx]==WALL) gx--;
+        cells[gy*width+gx]=GRAIN;
+        return cells;
+    }
+
+    /**
+     * Generates an arena and writes it as arena file.
+     * @param args type ("maze" or "rooms"), width, height, seed, file name
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length<5){
+            System.out.println("usage: ArenaGenerator maze|rooms <width> <height> <seed> <file>");
+            return;
+        }
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        byte[] cells = args[0].equals("rooms") ? rooms(width,height,9,seed) : maze(width,height,seed);
+        ArenaFile.write(args[4],width,height,cells,1,1);
+        System.out.println("arena "+width+"x"+height+" written to "+args[4]);
+    }
+}
@@ -0,0 +1,509 @@
+import java.util.Arrays;
+
+/**
+ * "Compiled" form of the MDP of a gridworld. The state space of the arena is numbered once with dense
+ * integer ids, rewards and terminal flags are precomputed, and the transition model P(s'|s,a) is stored
+ * in compressed rows (CSR) of successor ids and probabilities. The dynamic programming engines can sweep
+ * over these arrays without any Greenfoot object lookups and without allocating objects.
+ *
+ * State ids are assigned column by column (x outer, y inner), i.e. in the same order in which the
+ * classic sweeps run through the territory. An in-place sweep over the ids therefore updates the states
+ * in exactly the same order as before.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class CompiledMDP
+{
+    public final int width;
+    public final int height;
+    public final int numStates;
+    public final int numActions;
+
+    protected final double[][] transitModel; // transit model the tables were compiled for
+
+    protected final int[] stateId;   // cell (x*height+y) -> state id, -1 if not a state
+    public final int[] cellX;        // state id -> column
+    public final int[] cellY;        // state id -> row
+    public final double[] reward;    // reward for entering the state
+    public final boolean[] terminal;
+    public final boolean[] sweep;    // state is updated in a sweep (not terminal, no wall actor, at least one action)
+    public final int[] actionMask;   // bit a is set if action a belongs to the courses of action of the state
+
+    // CSR-rows of P(s'|s,a), row (s*numActions+a) covers the entries rowStart[row] .. rowStart[row+1]-1
+    public final int[] rowStart;
+    public final int[] successor;
+    public final double[] probability;
+    public final double[] expectedReward; // sum over P(s'|s,a)*r(s') for each row
+
+    // Predecessors of the states (built on demand), state t has the predecessors predStart[t] .. predStart[t+1]-1
+    protected int[] predStart = null;
+    protected int[] predecessor = null;
+
+    // Only for coarsened MDPs: state id of the finer MDP -> state id of this MDP, null otherwise
+    public final int[] aggregation;
+
+    /**
+     * Builds the compiled MDP from the field description of the environment and the given transit model.
+     * @param env gridworld environment
+     * @param transitModel transit model P(direction|a)
+     */
+    public CompiledMDP(RL_GridEnv env, double[][] transitModel)
+    {
+        this(env,null,transitModel);
+    }
+
+    /**
+     * Builds the compiled MDP directly from an arena file, without a Greenfoot world. Used for arenas that are
+     * too large to be populated with actors.
+     * @param arena memory-mapped arena file
+     * @param transitModel transit model P(direction|a)
+     */
+    public CompiledMDP(ArenaFile arena, double[][] transitModel)
+    {
+        this(null,arena,transitModel);
+    }
+
+    private CompiledMDP(RL_GridEnv env, ArenaFile arena, double[][] transitModel)
+    {
+        this.width = (arena!=null) ? arena.getWidth() : env.getWidth();
+        this.height = (arena!=null) ? arena.getHeight() : env.getHeight();
+        this.numActions = RL_GridEnv.getSizeOfActionspace();
+        this.transitModel = transitModel;
+        this.aggregation = null;
+
+        stateId = new int[width*height];
+        int n=0;
+        for ( int i=0;i<width;i++ ){
+            for( int j=0;j<height;j++ ){
+                stateId[i*height+j] = (elementAt(env,arena,i,j)!='M') ? n++ : -1;
+            }
+        }
+        numStates = n;
+
+        cellX = new int[numStates];
+        cellY = new int[numStates];
+        reward = new double[numStates];
+        terminal = new boolean[numStates];
+        sweep = new boolean[numStates];
+        actionMask = new int[numStates];
+        rowStart = new int[numStates*numActions+1];
+
+        // Upper bound for the number of entries; bumps into walls are merged into one entry.
+        int[] succ = new int[numStates*numActions*numActions];
+        double[] prob = new double[succ.length];
+        expectedReward = new double[numStates*numActions];
+
+        for ( int i=0;i<width;i++ ){
+            for( int j=0;j<height;j++ ){
+                int s = stateId[i*height+j];
+                if (s<0) continue;
+                cellX[s]=i;
+                cellY[s]=j;
+                char element = elementAt(env,arena,i,j);
+                reward[s]=RL_GridEnv.rewardOfElement(element);
+                terminal[s]=RL_GridEnv.isTerminalElement(element);
+                boolean wallActor = false;
+                if (env!=null){
+                    wallActor = !env.getObjectsAt(i,j,Wall.class).isEmpty();
+                }
+                for (int a=0;a<numActions;a++){
+                    int t = getStateId(i+RL_GridEnv.neighborStates[a][0],j+RL_GridEnv.neighborStates[a][1]);
+                    if (t>=0) actionMask[s] |= 1<<a;
+                }
+                // a tile enclosed by walls has no possible action and keeps the value 0
+                sweep[s]=(!wallActor) && (!terminal[s]) && (actionMask[s]!=0);
+            }
+        }
+
+        int e=0;
+        for (int s=0;s<numStates;s++){
+            for (int a=0;a<numActions;a++){
+                int row = s*numActions+a;
+                rowStart[row]=e;
+                for (int k=0;k<transitModel[a].length;k++){
+                    double p = transitModel[a][k];
+                    if (p<=0) continue;
+                    // bump: if movement is not possible stay on place.
+                    int t = getStateId(cellX[s]+RL_GridEnv.neighborStates[k][0],cellY[s]+RL_GridEnv.neighborStates[k][1]);
+                    if (t<0) t=s;
+                    int f=rowStart[row];
+                    while ((f<e)&&(succ[f]!=t)) f++;
+                    if (f==e){
+                        succ[e]=t;
+                        prob[e]=0.0;
+                        e++;
+                    }
+                    prob[f]+=p;
+                    expectedReward[row]+=p*reward[t];
+                }
+            }
+        }
+        rowStart[numStates*numActions]=e;
+        successor = Arrays.copyOf(succ,e);
+        probability = Arrays.copyOf(prob,e);
+    }
+
+    /**
+     * Map element of a tile, read from the arena file or from the map of the environment.
+     */
+    private static char elementAt(RL_GridEnv env, ArenaFile arena, int x, int y)
+    {
+        if (arena!=null) return arena.getElementAt(x,y);
+        return env.getMapElementAt(x,y);
+    }
+
+    /**
+     * Builds a coarsened MDP by aggregating the states of 2x2 tiles of the finer MDP. Only states that are updated
+     * in a sweep are aggregated, terminal states (and states that are held constant) remain single states. The
+     * transitions and rewards of an aggregate are the average over its members (uniform weights), successors are
+     * mapped to their aggregates.
+     * @param fine finer MDP
+     */
+    public CompiledMDP(CompiledMDP fine)
+    {
+        this.width = (fine.width+1)/2;
+        this.height = (fine.height+1)/2;
+        this.numActions = fine.numActions;
+        this.transitModel = fine.transitModel;
+        this.aggregation = new int[fine.numStates];
+
+        stateId = new int[width*height];
+        Arrays.fill(stateId,-1);
+        int n=0;
+        for (int s=0;s<fine.numStates;s++){
+            if (fine.sweep[s]){
+                int b = (fine.cellX[s]/2)*height+(fine.cellY[s]/2);
+                if (stateId[b]<0) stateId[b]=n++;
+                aggregation[s]=stateId[b];
+            }else{
+                aggregation[s]=n++;
+            }
+        }
+        numStates = n;
+
+        cellX = new int[numStates];
+        cellY = new int[numStates];
+        reward = new double[numStates];
+        terminal = new boolean[numStates];
+        sweep = new boolean[numStates];
+        actionMask = new int[numStates];
+        rowStart = new int[numStates*numActions+1];
+        expectedReward = new double[numStates*numActions];
+
+        // members of the aggregates
+        int[] memberStart = new int[numStates+1];
+        for (int s=0;s<fine.numStates;s++) memberStart[aggregation[s]+1]++;
+        for (int c=0;c<numStates;c++) memberStart[c+1]+=memberStart[c];
+        int[] member = new int[fine.numStates];
+        int[] fill = Arrays.copyOf(memberStart,numStates);
+        for (int s=0;s<fine.numStates;s++){
+            int c = aggregation[s];
+            member[fill[c]++]=s;
+            cellX[c]=fine.cellX[s]/2;
+            cellY[c]=fine.cellY[s]/2;
+            sweep[c]=fine.sweep[s];
+            terminal[c]=fine.terminal[s];
+            reward[c]=fine.reward[s];
+            actionMask[c]|=fine.actionMask[s];
+        }
+
+        int[] succ = new int[fine.successor.length];
+        double[] prob = new double[succ.length];
+        double[] acc = new double[numStates];
+        int[] touched = new int[numStates];
+        int e=0;
+        for (int c=0;c<numStates;c++){
+            double w = 1.0/(memberStart[c+1]-memberStart[c]);
+            for (int a=0;a<numActions;a++){
+                int row = c*numActions+a;
+                rowStart[row]=e;
+                int numTouched=0;
+                for (int m=memberStart[c];m<memberStart[c+1];m++){
+                    int fineRow = member[m]*numActions+a;
+                    expectedReward[row]+=w*fine.expectedReward[fineRow];
+                    for (int f=fine.rowStart[fineRow];f<fine.rowStart[fineRow+1];f++){
+                        int t = aggregation[fine.successor[f]];
+                        if (acc[t]==0.0) touched[numTouched++]=t;
+                        acc[t]+=w*fine.probability[f];
+                    }
+                }
+                for (int i=0;i<numTouched;i++){
+                    int t = touched[i];
+                    if (e==succ.length){
+                        succ = Arrays.copyOf(succ,2*e);
+                        prob = Arrays.copyOf(prob,2*e);
+                    }
+                    succ[e]=t;
+                    prob[e]=acc[t];
+                    e++;
+                    acc[t]=0.0;
+                }
+            }
+        }
+        rowStart[numStates*numActions]=e;
+        successor = Arrays.copyOf(succ,e);
+        probability = Arrays.copyOf(prob,e);
+    }
+
+    /**
+     * Checks whether the tables were compiled for the given transit model.
+     * @param transitModel transit model P(direction|a)
+     * @return true if the tables belong to the transit model.
+     */
+    public boolean isCompiledFor(double[][] transitModel)
+    {
+        return this.transitModel==transitModel;
+    }
+
+    /**
+     * Returns the id of the state at the given position.
+     * @param x column in the gridworld
+     * @param y row in the gridworld
+     * @return state id, -1 if the position is no state (wall or "out of the world").
+     */
+    public int getStateId(int x, int y)
+    {
+        if ((x<0)||(x>=width)||(y<0)||(y>=height)) return -1;
+        return stateId[x*height+y];
+    }
+
+    /**
+     * Sum over P(s'|s,a)*(r(s')+gamma*V(s')) for all successors s' of the state-action pair.
+     * @param V state values over the state ids (terminal states must hold 0)
+     * @param s state id
+     * @param a action
+     * @param gamma discount
+     * @return Q(s,a) with respect to V
+     */
+    public double q(double[] V, int s, int a, double gamma)
+    {
+        int row = s*numActions+a;
+        double v = 0.0;
+        for (int e=rowStart[row];e<rowStart[row+1];e++){
+            v+=probability[e]*V[successor[e]];
+        }
+        return expectedReward[row]+gamma*v;
+    }
+
+    /**
+     * Maximum of Q(s,a) over the possible actions of the state.
+     * @param V state values over the state ids
+     * @param s state id
+     * @param gamma discount
+     * @return max_a Q(s,a), negative infinity if the state has no possible action.
+     */
+    public double maxQ(double[] V, int s, double gamma)
+    {
+        double maxV=Double.NEGATIVE_INFINITY;
+        int mask = actionMask[s];
+        for (int a=0;a<numActions;a++){
+            if ((mask&(1<<a))==0) continue;
+            double value = q(V,s,a,gamma);
+            if ( value>maxV ) maxV=value;
+        }
+        return maxV;
+    }
+
+    /**
+     * Returns the first action with maximum Q(s,a) (same order as "coursesOfAction").
+     * @param V state values over the state ids
+     * @param s state id
+     * @param gamma discount
+     * @return greedy action, -1 if the state has no possible action.
+     */
+    public int greedyAction(double[] V, int s, double gamma)
+    {
+        double maxV=Double.NEGATIVE_INFINITY;
+        int maxA=-1;
+        int mask = actionMask[s];
+        for (int a=0;a<numActions;a++){
+            if ((mask&(1<<a))==0) continue;
+            double value = q(V,s,a,gamma);
+            if ( value>maxV ) {
+                maxV=value;
+                maxA=a;
+            }
+        }
+        return maxA;
+    }
+
+    /**
+     * In-place sweep of value iteration, V(s) := max_a Q(s,a) for all swept states in the order of the state ids.
+     * @param V state values over the state ids
+     * @param gamma discount
+     * @return maximum increase of a state value
+     */
+    public double sweep(double[] V, double gamma)
+    {
+        double maxDelta=0.0;
+        for (int s=0;s<numStates;s++){
+            if (!sweep[s]) continue;
+            double v = maxQ(V,s,gamma);
+            if (maxDelta<v-V[s]) maxDelta = v-V[s];
+            V[s] = v;
+        }
+        return maxDelta;
+    }
+
+    /**
+     * In-place sweep of the policy evaluation, V(s) := Q(s,pi(s)) for all swept states.
+     * @param V state values over the state ids
+     * @param pi action for each state id
+     * @param gamma discount
+     * @return maximum increase of a state value
+     */
+    public double evaluationSweep(double[] V, int[] pi, double gamma)
+    {
+        double maxDelta=0.0;
+        for (int s=0;s<numStates;s++){
+            if (!sweep[s]) continue;
+            double v = q(V,s,pi[s],gamma);
+            if (maxDelta<v-V[s]) maxDelta = v-V[s];
+            V[s] = v;
+        }
+        return maxDelta;
+    }
+
+    /**
+     * Iteration of successive over-relaxation (SOR) for the linear system (I-gamma*P_pi)V = r_pi. The
+     * self-transition P(s|s,pi(s)) is put on the diagonal.
+     * @param V state values over the state ids
+     * @param pi action for each state id
+     * @param gamma discount
+     * @param omega relaxation factor (1: Gauss-Seidel)
+     * @return maximum absolute change of a state value
+     */
+    public double sorSweep(double[] V, int[] pi, double gamma, double omega)
+    {
+        double maxChange=0.0;
+        for (int s=0;s<numStates;s++){
+            if (!sweep[s]) continue;
+            int row = s*numActions+pi[s];
+            double diag=0.0;
+            double sum=0.0;
+            for (int e=rowStart[row];e<rowStart[row+1];e++){
+                int t = successor[e];
+                if (t==s){
+                    diag+=probability[e];
+                }else{
+                    sum+=probability[e]*V[t];
+                }
+            }
+            double v_gs = (expectedReward[row]+gamma*sum)/(1.0-gamma*diag);
+            double v_new = V[s]+omega*(v_gs-V[s]);
+            double change = Math.abs(v_new-V[s]);
+            if (maxChange<change) maxChange=change;
+            V[s]=v_new;
+        }
+        return maxChange;
+    }
+
+    /**
+     * Policy improvement: sets pi(s) to the greedy action with respect to V in all swept states.
+     * @param V state values over the state ids
+     * @param pi action for each state id (is updated)
+     * @param gamma discount
+     * @return true, if no action has changed (the policy is stable)
+     */
+    public boolean improvePolicy(double[] V, int[] pi, double gamma)
+    {
+        boolean stable=true;
+        for (int s=0;s<numStates;s++){
+            if (!sweep[s]) continue;
+            int a = greedyAction(V,s,gamma);
+            if (a!=pi[s]){
+                pi[s]=a;
+                stable=false;
+            }
+        }
+        return stable;
+    }
+
+    /**
+     * Builds the lists of predecessors, i.e. the states s with P(t|s,a)>0 for some action a.
+     */
+    public void buildPredecessors()
+    {
+        if (predStart!=null) return;
+        int[] count = new int[numStates+1];
+        int[] lastSeen = new int[numStates];
+        Arrays.fill(lastSeen,-1);
+        for (int pass=0;pass<2;pass++){
+            int[] fill = (pass==0) ? null : Arrays.copyOf(count,numStates);
+            for (int s=0;s<numStates;s++){
+                for (int e=rowStart[s*numActions];e<rowStart[(s+1)*numActions];e++){
+                    int t = successor[e];
+                    if (lastSeen[t]==s+pass*numStates) continue;
+                    lastSeen[t]=s+pass*numStates;
+                    if (pass==0) count[t+1]++;
+                    else predecessor[fill[t]++]=s;
+                }
+            }
+            if (pass==0){
+                for (int t=0;t<numStates;t++) count[t+1]+=count[t];
+                predecessor = new int[count[numStates]];
+            }
+        }
+        predStart = count;
+    }
+
+    /**
+     * Number of predecessors of a state (requires "buildPredecessors").
+     * @param t state id
+     * @return number of states from which t can be reached with one action.
+     */
+    public int getNumberOfPredecessors(int t)
+    {
+        return predStart[t+1]-predStart[t];
+    }
+
+    /**
+     * Returns the i-th predecessor of a state (requires "buildPredecessors").
+     * @param t state id
+     * @param i index of the predecessor
+     * @return state id of the predecessor
+     */
+    public int getPredecessor(int t, int i)
+    {
+        return predecessor[predStart[t]+i];
+    }
+
+    /**
+     * Copies the values of a V[x][y] table into an array over the state ids. Terminal states get the value 0.
+     * @param V table of state values [column][row]
+     * @param Vs target array (length numStates)
+     */
+    public void gather(double[][] V, double[] Vs)
+    {
+        for (int s=0;s<numStates;s++){
+            Vs[s] = terminal[s] ? 0.0 : V[cellX[s]][cellY[s]];
+        }
+    }
+
+    /**
+     * Writes the values over the state ids back into a V[x][y] table.
+     * @param Vs values over the state ids
+     * @param V table of state values [column][row]
+     */
+    public void scatter(double[] Vs, double[][] V)
+    {
+        for (int s=0;s<numStates;s++){
+            if (sweep[s]) V[cellX[s]][cellY[s]] = Vs[s];
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Headless benchmark of the dynamic programming engines. Runs the solver backends of ValueIteration and
+ * PolicyIteration on generated room arenas of increasing size (10^2, 10^4 and 10^6 tiles) with the three
+ * transit models, without Greenfoot world and without display. Each case is run WARMUP_RUNS times for the
+ * JIT compiler and then MEASURED_RUNS times (fewer if a case exceeds TIME_BUDGET); the table shows the median
+ * of the measured runs:
+ *
+ *   sweeps     sweeps (VI) or evaluation sweeps (PI) until convergence (minDelta of the engines)
+ *   ms         time to convergence (without compiling the MDP)
+ *   sweeps/s   sweep rate
+ *   MB/s       allocation rate of the benchmark thread (the worker threads of the parallel sweep are not counted)
+ *   status     "converged", or "capped" if a measured run stopped at MAX_SWEEPS or MAX_IMPROVEMENTS before
+ *              convergence; sweeps and ms of a capped row are the effort up to the safety limit
+ *
+ * Start: java DPBenchmark [largest side length, default 1000]
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class DPBenchmark
+{
+    public static int WARMUP_RUNS = 2;
+    public static int MEASURED_RUNS = 5;
+    public static double TIME_BUDGET = 10.0;   // seconds per case, slow cases are measured with fewer runs
+    public static int MAX_SWEEPS = 100000;     // safety limit for one run
+    public static int MAX_IMPROVEMENTS = 1000; // safety limit for policy iteration
+    public static long SEED = 42;
+
+    private static final double MIN_DELTA = 0.001; // termination criterion of the engines
+
+    private static final String[] BACKENDS = {"VI in-place","VI parallel","VI stencil","VI multigrid",
+                                              "PI sweeps","PI modified","PI SOR"};
+    private static final String[] MODELS = {"deterministic","RusselNorvig","uncertain"};
+
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private static int sweeps; // sweeps of the last run
+
+    public static void main(String[] args) throws IOException
+    {
+        int maxSide = (args.length>0) ? Integer.parseInt(args[0]) : 1000;
+        double[][][] models = {RL_GridWorldAgent.transitDeterministic,RL_GridWorldAgent.transitRusselNorvig,
+                               RL_GridWorldAgent.transitUncertain};
+        System.out.println(String.format("%-10s %-13s %-13s %8s %10s %12s %10s  %s","tiles","model","backend",
+                                         "sweeps","ms","sweeps/s","MB/s","status"));
+        for (int side=10;side<=maxSide;side*=10){
+            ArenaFile arena = generate(side);
+            for (int m=0;m<models.length;m++){
+                long t0 = System.nanoTime();
+                CompiledMDP mdp = new CompiledMDP(arena,models[m]);
+                double compileMs = (System.nanoTime()-t0)/1e6;
+                System.out.println(String.format("%-10d %-13s %-13s %8s %10.1f",side*side,MODELS[m],"(compile)",
+                                                 "",compileMs));
+                for (int b=0;b<BACKENDS.length;b++){
+                    double[] ms = new double[MEASURED_RUNS];
+                    double[] mb = new double[MEASURED_RUNS];
+                    int measured=0;
+                    double spent=0.0;
+                    boolean capped=false;
+                    for (int r=0;r<WARMUP_RUNS+MEASURED_RUNS;r++){
+                        long bytes = allocatedBytes();
+                        long t = System.nanoTime();
+                        boolean converged = run(b,mdp);
+                        double elapsed = (System.nanoTime()-t)/1e6;
+                        spent+=elapsed/1e3;
+                        if ((r>=WARMUP_RUNS)||(spent>TIME_BUDGET)){
+                            if (!converged) capped=true;
+                            ms[measured] = elapsed;
+                            mb[measured] = (allocatedBytes()-bytes)/1e6/(elapsed/1e3);
+                            measured++;
+                        }
+                        if (spent>TIME_BUDGET) break;
+                    }
+                    double time = median(ms,measured);
+                    System.out.println(String.format("%-10d %-13s %-13s %8d %10.1f %12.0f %10.1f  %s",side*side,MODELS[m],
+                                                     BACKENDS[b],sweeps,time,sweeps/(time/1e3),median(mb,measured),
+                                                     capped ? "capped" : "converged"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a room arena with side*side tiles and loads it memory-mapped.
+     */
+    private static ArenaFile generate(int side) throws IOException
+    {
+        File file = File.createTempFile("arena",".rlga");
+        file.deleteOnExit();
+        ArenaFile.write(file.getPath(),side,side,ArenaGenerator.rooms(side,side,9,SEED),1,1);
+        return ArenaFile.open(file.getPath());
+    }
+
+    /**
+     * Solves the MDP from V=0 with a backend, with the same solver methods as ValueIteration and PolicyIteration.
+     * @return true, if the run converged before the safety limit
+     */
+    private static boolean run(int backend, CompiledMDP mdp)
+    {
+        double[] V = new double[mdp.numStates];
+        double gamma = ValueIteration.GAMMA;
+        switch (backend){
+            case 0: sweeps = ValueIteration.valueIteration(mdp,V,null,gamma,MIN_DELTA,MAX_SWEEPS); break;
+            case 1: sweeps = ValueIteration.valueIteration(mdp,V,new double[mdp.numStates],gamma,MIN_DELTA,MAX_SWEEPS); break;
+            case 2: sweeps = new StencilKernel(mdp).solve(V,gamma,MIN_DELTA,MAX_SWEEPS); break;
+            case 3: sweeps = new MultigridSolver(mdp).solve(V,gamma,MIN_DELTA,MAX_SWEEPS); break;
+            case 4: return policyIteration(mdp,V,PolicyIteration.EVALUATION_SWEEPS);
+            case 5: return policyIteration(mdp,V,PolicyIteration.EVALUATION_MODIFIED);
+            default: return policyIteration(mdp,V,PolicyIteration.EVALUATION_SOR);
+        }
+        return sweeps<MAX_SWEEPS;
+    }
+
+    /**
+     * Policy iteration as in PolicyIteration, starting with the first possible action in each state. The number
+     * of evaluation sweeps (SOR: iterations of the solver) is stored in "sweeps".
+     * @return true, if the policy became stable within MAX_IMPROVEMENTS improvements
+     */
+    private static boolean policyIteration(CompiledMDP mdp, double[] V, int evaluation)
+    {
+        double gamma = PolicyIteration.GAMMA;
+        int[] pi = new int[mdp.numStates];
+        for (int s=0;s<mdp.numStates;s++) pi[s] = mdp.sweep[s] ? Integer.numberOfTrailingZeros(mdp.actionMask[s]) : -1;
+        sweeps=0;
+        for (int improvement=0;improvement<MAX_IMPROVEMENTS;improvement++){
+            int c = PolicyIteration.evaluatePolicy(mdp,V,pi,evaluation,gamma,MIN_DELTA,MAX_SWEEPS);
+            sweeps+=c;
+            boolean converged = (evaluation!=PolicyIteration.EVALUATION_MODIFIED)||(c<PolicyIteration.K_SWEEPS);
+            if (mdp.improvePolicy(V,pi,gamma)&&converged) return true;
+        }
+        return false;
+    }
+
+    private static long allocatedBytes()
+    {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static double median(double[] values, int n)
+    {
+        double[] v = Arrays.copyOf(values,n);
+        Arrays.sort(v);
+        return v[v.length/2];
+    }
+}
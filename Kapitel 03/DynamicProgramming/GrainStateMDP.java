@@ -0,0 +1,346 @@
+import java.util.Arrays;
+
+/**
+ * Product state space (tile, remaining grains) of a gridworld with several grains. In the plain compiled MDP
+ * every grain tile is terminal, so the value of a map with grains worth 1, 2 and 3 only reflects the first
+ * grain reached. Here a grain is consumed when the hamster enters its tile: the reward of the grain is paid,
+ * the grain disappears and the episode goes on in the "layer" of the remaining grains. The episode ends when
+ * the last grain is taken or the hamster steps into a trap.
+ *
+ * A layer is identified by the subset of grains that are still on the map (bit g for grain g). Only layers
+ * that can be reached from the start are allocated; they are found with a search over the subsets, in which
+ * each layer is flooded from its entry tiles (the start or the tile of the grain taken last). The values and
+ * the policy are stored packed in primitive arrays with the index layer*numStates+s, the states of a layer that
+ * are not reachable are marked in a bit set and not backed up.
+ *
+ * Taking a grain only ever removes grains, so a layer depends only on itself and on layers with fewer grains.
+ * The layers are numbered in the order of the search (decreasing number of grains), the solvers process them
+ * from the last layer to the first and can solve each layer completely before moving on.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class GrainStateMDP
+{
+    public static int MAX_GRAINS = 20; // the subsets of the grains are indexed with an array of 2^numberOfGrains ints
+
+    public final CompiledMDP mdp;
+    public final int numStates;       // states per layer (= states of the compiled MDP)
+    public final int numGrains;
+    public final int[] grainState;    // grain -> state id of its tile
+    public final double[] grainReward; // grain -> reward for taking it
+    public final int allGrains;       // subset with all grains
+    public final int numLayers;
+    public final int[] layerGrains;   // layer -> subset of the remaining grains
+
+    protected final int[] grainOf;    // state id -> grain on the tile, -1 if none
+    protected final int[] layerOf;    // subset -> layer, -1 if not reachable
+    protected final long[] reachable; // bit layer*numStates+s is set if the state is reachable
+    protected final double freeReward; // reward for entering a tile whose grain has been taken
+
+    /**
+     * Builds the reachable part of the product state space.
+     * @param mdp compiled MDP of the arena, terminal states with a positive reward are treated as grains
+     * @param start state id of the start tile
+     */
+    public GrainStateMDP(CompiledMDP mdp, int start)
+    {
+        this.mdp = mdp;
+        this.numStates = mdp.numStates;
+        this.freeReward = RL_GridEnv.rewardOfElement('0');
+
+        grainOf = new int[numStates];
+        Arrays.fill(grainOf,-1);
+        int g=0;
+        for (int s=0;s<numStates;s++){
+            if (mdp.terminal[s]&&(mdp.reward[s]>freeReward)) grainOf[s]=g++;
+        }
+        if (g>MAX_GRAINS){
+            throw new IllegalArgumentException("too many grains for the product state space ("+g+">"+MAX_GRAINS+")");
+        }
+        numGrains = g;
+        grainState = new int[numGrains];
+        grainReward = new double[numGrains];
+        for (int s=0;s<numStates;s++){
+            if (grainOf[s]>=0){
+                grainState[grainOf[s]]=s;
+                grainReward[grainOf[s]]=mdp.reward[s];
+            }
+        }
+        allGrains = (1<<numGrains)-1;
+
+        // search over the subsets, breadth first: all layers with one grain more are flooded before a layer
+        layerOf = new int[allGrains+1];
+        Arrays.fill(layerOf,-1);
+        int[] subsets = new int[allGrains+1];
+        int[] entries = new int[allGrains+1]; // bit g: the layer is entered on the tile of grain g
+        int[] visited = new int[numStates];   // number of the last layer that has flooded the state (+1)
+        int[] stack = new int[numStates];
+        long[][] reached = new long[allGrains+1][];
+        int n=0;
+        layerOf[allGrains]=n;
+        subsets[n++]=allGrains;
+        for (int l=0;l<n;l++){
+            int set = subsets[l];
+            long[] bits = new long[(numStates+63)>>6];
+            reached[l]=bits;
+            int sp=0;
+            if ((set==allGrains)&&(start>=0)){
+                stack[sp++]=start;
+                visited[start]=l+1;
+            }
+            for (int e=0;e<numGrains;e++){
+                if (((entries[set]>>e)&1)!=0){
+                    int s = grainState[e];
+                    if (visited[s]!=l+1){
+                        stack[sp++]=s;
+                        visited[s]=l+1;
+                    }
+                }
+            }
+            while (sp>0){
+                int s = stack[--sp];
+                bits[s>>6] |= 1L<<s;
+                if (!isSwept(set,s)) continue;
+                int mask = mdp.actionMask[s];
+                for (int a=0;a<mdp.numActions;a++){
+                    if ((mask&(1<<a))==0) continue;
+                    int row = s*mdp.numActions+a;
+                    for (int i=mdp.rowStart[row];i<mdp.rowStart[row+1];i++){
+                        int t = mdp.successor[i];
+                        if (visited[t]==l+1) continue;
+                        visited[t]=l+1;
+                        int h = grainOf[t];
+                        if ((h>=0)&&(((set>>h)&1)!=0)){
+                            // the grain is taken, the episode goes on in the layer of the remaining grains
+                            int rest = set&~(1<<h);
+                            if (rest!=0){
+                                if (layerOf[rest]<0){
+                                    layerOf[rest]=n;
+                                    subsets[n++]=rest;
+                                }
+                                entries[rest] |= 1<<h;
+                            }
+                            continue;
+                        }
+                        stack[sp++]=t;
+                    }
+                }
+            }
+        }
+        if ((long)n*numStates>Integer.MAX_VALUE-8){
+            throw new IllegalArgumentException("product state space too large ("+n+" layers of "+numStates+" states)");
+        }
+        numLayers = n;
+        layerGrains = Arrays.copyOf(subsets,n);
+        reachable = new long[(int)(((long)n*numStates+63)>>6)];
+        for (int l=0;l<n;l++){
+            for (int s=0;s<numStates;s++){
+                if ((reached[l][s>>6]&(1L<<s))!=0) setReachable(index(l,s));
+            }
+        }
+    }
+
+    /**
+     * Size of the packed arrays (values, policy).
+     */
+    public int size()
+    {
+        return numLayers*numStates;
+    }
+
+    /**
+     * Index of a state in the packed arrays.
+     * @param layer layer of the remaining grains
+     * @param s state id of the tile
+     */
+    public int index(int layer, int s)
+    {
+        return layer*numStates+s;
+    }
+
+    /**
+     * Returns the layer of a subset of remaining grains.
+     * @param grains subset of the remaining grains (bit g for grain g)
+     * @return layer, -1 if the subset can not be reached from the start.
+     */
+    public int getLayer(int grains)
+    {
+        if ((grains<0)||(grains>allGrains)) return -1;
+        return layerOf[grains];
+    }
+
+    /**
+     * Returns the grain on a tile.
+     * @param s state id
+     * @return grain index, -1 if there is no grain on the tile.
+     */
+    public int getGrain(int s)
+    {
+        return grainOf[s];
+    }
+
+    /**
+     * Tests whether a state of a layer is reachable from the start and is backed up by the solvers.
+     */
+    public boolean isState(int layer, int s)
+    {
+        int i = index(layer,s);
+        return ((reachable[i>>6]>>>(i&63))&1L)!=0 && isSwept(layerGrains[layer],s);
+    }
+
+    private void setReachable(int i)
+    {
+        reachable[i>>6] |= 1L<<(i&63);
+    }
+
+    /**
+     * A tile is updated if it is not terminal, or if it is a grain tile whose grain has been taken already.
+     */
+    private boolean isSwept(int grains, int s)
+    {
+        int g = grainOf[s];
+        if (g>=0) return ((grains>>g)&1)==0;
+        return mdp.sweep[s];
+    }
+
+    /**
+     * Q((layer,s),a) over the packed state values.
+     * @param V packed state values
+     * @param layer layer of the state
+     * @param s state id of the tile
+     * @param a action
+     * @param gamma discount
+     * @return Q-value
+     */
+    public double q(double[] V, int layer, int s, int a, double gamma)
+    {
+        int grains = layerGrains[layer];
+        int base = layer*numStates;
+        int row = s*mdp.numActions+a;
+        double v = 0.0;
+        for (int e=mdp.rowStart[row];e<mdp.rowStart[row+1];e++){
+            int t = mdp.successor[e];
+            int g = grainOf[t];
+            double r;
+            double next;
+            if (g<0){
+                r = mdp.reward[t];
+                next = V[base+t];
+            }else if (((grains>>g)&1)!=0){
+                r = grainReward[g];
+                int rest = grains&~(1<<g);
+                next = (rest==0) ? 0.0 : V[layerOf[rest]*numStates+t];
+            }else{
+                r = freeReward;
+                next = V[base+t];
+            }
+            v+=mdp.probability[e]*(r+gamma*next);
+        }
+        return v;
+    }
+
+    /**
+     * Maximum of Q((layer,s),a) over the possible actions.
+     */
+    public double maxQ(double[] V, int layer, int s, double gamma)
+    {
+        double maxV=Double.NEGATIVE_INFINITY;
+        int mask = mdp.actionMask[s];
+        for (int a=0;a<mdp.numActions;a++){
+            if ((mask&(1<<a))==0) continue;
+            double value = q(V,layer,s,a,gamma);
+            if ( value>maxV ) maxV=value;
+        }
+        return maxV;
+    }
+
+    /**
+     * First action with maximum Q((layer,s),a), -1 if the state has no possible action.
+     */
+    public int greedyAction(double[] V, int layer, int s, double gamma)
+    {
+        double maxV=Double.NEGATIVE_INFINITY;
+        int maxA=-1;
+        int mask = mdp.actionMask[s];
+        for (int a=0;a<mdp.numActions;a++){
+            if ((mask&(1<<a))==0) continue;
+            double value = q(V,layer,s,a,gamma);
+            if ( value>maxV ) {
+                maxV=value;
+                maxA=a;
+            }
+        }
+        return maxA;
+    }
+
+    /**
+     * In-place Bellman optimality sweep over one layer.
+     * @param V packed state values
+     * @param layer layer
+     * @param gamma discount
+     * @return largest absolute change of a state value
+     */
+    public double sweep(double[] V, int layer, double gamma)
+    {
+        double maxDelta=0.0;
+        int base = layer*numStates;
+        for (int s=0;s<numStates;s++){
+            if (!isState(layer,s)) continue;
+            double v = maxQ(V,layer,s,gamma);
+            double delta = Math.abs(v-V[base+s]);
+            if (maxDelta<delta) maxDelta=delta;
+            V[base+s]=v;
+        }
+        return maxDelta;
+    }
+
+    /**
+     * In-place sweep over one layer for the evaluation of a policy.
+     * @param V packed state values
+     * @param pi packed policy (action per state)
+     * @param layer layer
+     * @param gamma discount
+     * @return largest absolute change of a state value
+     */
+    public double evaluationSweep(double[] V, int[] pi, int layer, double gamma)
+    {
+        double maxDelta=0.0;
+        int base = layer*numStates;
+        for (int s=0;s<numStates;s++){
+            if (!isState(layer,s)) continue;
+            double v = q(V,layer,s,pi[base+s],gamma);
+            double delta = Math.abs(v-V[base+s]);
+            if (maxDelta<delta) maxDelta=delta;
+            V[base+s]=v;
+        }
+        return maxDelta;
+    }
+
+    /**
+     * Writes the values of a layer into V[x][y]. States that are not reachable in the layer are set to 0.
+     * @param V packed state values
+     * @param layer layer
+     * @param Vxy state values over the tiles
+     */
+    public void scatter(double[] V, int layer, double[][] Vxy)
+    {
+        for (int s=0;s<numStates;s++){
+            Vxy[mdp.cellX[s]][mdp.cellY[s]] = isState(layer,s) ? V[index(layer,s)] : 0.0;
+        }
+    }
+}
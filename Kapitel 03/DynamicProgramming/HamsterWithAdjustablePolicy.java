@@ -131,6 +131,7 @@ public class HamsterWithAdjustablePolicy extends RL_GridWorldAgent
                 List objects = env.getObjectsAt(i,j,Wall.class);
                 if (( objects.size()==0 ) && (!env.isTerminal(i,j))){
                     List <Integer> A_s = env.coursesOfAction(i,j);
+                    if (A_s.isEmpty()) continue; // tile enclosed by walls
                     int a_nr=random.nextInt(A_s.size());
                     setPi(i,j,A_s.get(a_nr)); // pi(s) <- a
                 }
@@ -0,0 +1,85 @@
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Synchronous ("Jacobi") Bellman sweep over a band of state ids of a compiled MDP. All new values are
+ * computed from the old value array and written into a second array, so the bands can be processed in
+ * parallel on a ForkJoinPool and the result does not depend on the number of threads. The task returns
+ * the maximum increase of a state value within its band.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class JacobiSweep extends RecursiveTask<Double>
+{
+    private static final long serialVersionUID = 1L;
+
+    public static int MIN_BAND_SIZE = 4096; // states per band, smaller bands are not split any further
+
+    private final CompiledMDP mdp;
+    private final double[] V;
+    private final double[] V_next;
+    private final double gamma;
+    private final int from;
+    private final int to;
+
+    /**
+     * Creates a sweep over the state ids from..to-1.
+     * @param mdp compiled MDP
+     * @param V old state values
+     * @param V_next array for the new state values
+     * @param gamma discount
+     * @param from first state id of the band
+     * @param to state id behind the band
+     */
+    public JacobiSweep(CompiledMDP mdp, double[] V, double[] V_next, double gamma, int from, int to)
+    {
+        this.mdp = mdp;
+        this.V = V;
+        this.V_next = V_next;
+        this.gamma = gamma;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected Double compute()
+    {
+        if (to-from>MIN_BAND_SIZE){
+            int mid = (from+to)>>>1;
+            JacobiSweep upper = new JacobiSweep(mdp,V,V_next,gamma,mid,to);
+            upper.fork();
+            double maxDelta = new JacobiSweep(mdp,V,V_next,gamma,from,mid).compute();
+            return Math.max(maxDelta,upper.join());
+        }
+        return sweepBand();
+    }
+
+    private double sweepBand()
+    {
+        double maxDelta=0.0;
+        for (int s=from;s<to;s++){
+            if (!mdp.sweep[s]){
+                V_next[s]=V[s];
+                continue;
+            }
+            V_next[s] = mdp.maxQ(V,s,gamma);
+            double delta = V_next[s]-V[s];
+            if (maxDelta<delta) maxDelta = delta;
+        }
+        return maxDelta;
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+
+/**
+ * Multigrid (coarse-to-fine) value iteration. The compiled MDP of the arena is coarsened repeatedly by
+ * aggregating 2x2 tiles. The coarsest level is solved first, its values are interpolated (piecewise constant)
+ * to the next finer level as a warm start, and so on down to the original state space. On large open maps the
+ * values no longer have to creep over the whole diameter of the fine grid sweep by sweep.
+ *
+ * All sweeps are in place and alternate their direction (symmetric Gauss-Seidel), so values travel across the
+ * grid in both directions within two sweeps. The self-transition of an action (bumps, aggregates that keep
+ * their state) is solved directly, i.e. Q(s,a) = (r + gamma*sum_{s'!=s} P(s'|s,a)V(s')) / (1-gamma*P(s|s,a)),
+ * which has the same fixed point as the usual Bellman backup. Because of the warm start values may decrease as
+ * well, so the sweeps stop when the largest absolute change is at most minDelta.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class MultigridSolver
+{
+    public static int MIN_COARSE_STATES = 64; // no further coarsening below this number of states
+    public static int MAX_COARSE_SWEEPS = 10000;
+    public static double COARSE_TOLERANCE = 10.0; // coarse levels are solved up to COARSE_TOLERANCE*minDelta
+
+    private final CompiledMDP[] levels; // levels[0] is the original MDP
+    private final double[][] V;         // state values of the coarse levels (V[0] is passed to solve)
+    private int coarseSweeps = 0;
+
+    /**
+     * Builds the hierarchy of coarsened MDPs.
+     * @param mdp compiled MDP of the arena
+     */
+    public MultigridSolver(CompiledMDP mdp)
+    {
+        ArrayList <CompiledMDP> l = new ArrayList <CompiledMDP> ();
+        l.add(mdp);
+        CompiledMDP current = mdp;
+        while ((current.numStates>MIN_COARSE_STATES)&&((current.width>1)||(current.height>1))){
+            CompiledMDP coarse = new CompiledMDP(current);
+            if (coarse.numStates>=current.numStates) break;
+            l.add(coarse);
+            current = coarse;
+        }
+        levels = l.toArray(new CompiledMDP[0]);
+        V = new double[levels.length][];
+        for (int i=1;i<levels.length;i++) V[i] = new double[levels[i].numStates];
+    }
+
+    /**
+     * Number of levels (including the original state space).
+     */
+    public int getNumberOfLevels()
+    {
+        return levels.length;
+    }
+
+    /**
+     * Number of sweeps on the coarse levels during the last call of "solve".
+     */
+    public int getCoarseSweeps()
+    {
+        return coarseSweeps;
+    }
+
+    /**
+     * Solves the Bellman optimality equation coarse-to-fine.
+     * @param Vs values over the state ids of the original MDP. The values of the states that are not swept
+     *           (terminal states, held states) are kept, the other values are overwritten.
+     * @param gamma discount
+     * @param minDelta termination criterion (largest absolute change within a sweep)
+     * @param maxSweeps maximum number of sweeps on the original level, -1 for "until stable"
+     * @return number of sweeps on the original level
+     */
+    public int solve(double[] Vs, double gamma, double minDelta, int maxSweeps)
+    {
+        V[0] = Vs;
+        // restriction of the constant values (terminal states and held states)
+        for (int i=1;i<levels.length;i++){
+            int[] agg = levels[i].aggregation;
+            CompiledMDP finer = levels[i-1];
+            for (int s=0;s<finer.numStates;s++){
+                V[i][agg[s]] = finer.sweep[s] ? 0.0 : V[i-1][s];
+            }
+        }
+        coarseSweeps = 0;
+        int k = 0;
+        for (int i=levels.length-1;i>=0;i--){
+            if (i<levels.length-1){
+                // interpolation of the coarser solution as warm start
+                int[] agg = levels[i+1].aggregation;
+                for (int s=0;s<levels[i].numStates;s++){
+                    if (levels[i].sweep[s]) V[i][s] = V[i+1][agg[s]];
+                }
+            }
+            int limit = (i==0) ? maxSweeps : MAX_COARSE_SWEEPS;
+            double tolerance = (i==0) ? minDelta : COARSE_TOLERANCE*minDelta;
+            int c = 0;
+            while ((limit<0)||(c<limit)){
+                c++;
+                // symmetric Gauss-Seidel: every second sweep runs backwards through the state ids
+                if (sweep(levels[i],V[i],gamma,(c%2==0))<=tolerance) break;
+            }
+            if (i==0) k=c; else coarseSweeps+=c;
+        }
+        return k;
+    }
+
+    /**
+     * In-place Bellman sweep with direct solution of the self-transitions.
+     * @return largest absolute change of a state value
+     */
+    private double sweep(CompiledMDP mdp, double[] V, double gamma, boolean backwards)
+    {
+        double maxDelta=0.0;
+        for (int n=0;n<mdp.numStates;n++){
+            int s = backwards ? mdp.numStates-1-n : n;
+            if (!mdp.sweep[s]) continue;
+            double best=Double.NEGATIVE_INFINITY;
+            int mask = mdp.actionMask[s];
+            for (int a=0;a<mdp.numActions;a++){
+                if ((mask&(1<<a))==0) continue;
+                double value = solvedQ(mdp,V,s,a,gamma);
+                if (value>best) best=value;
+            }
+            double delta = Math.abs(best-V[s]);
+            if (maxDelta<delta) maxDelta=delta;
+            V[s]=best;
+        }
+        return maxDelta;
+    }
+
+    /**
+     * Q(s,a) with the self-transition solved directly.
+     */
+    private double solvedQ(CompiledMDP mdp, double[] V, int s, int a, double gamma)
+    {
+        int row = s*mdp.numActions+a;
+        double diag=0.0;
+        double sum=0.0;
+        for (int e=mdp.rowStart[row];e<mdp.rowStart[row+1];e++){
+            int t = mdp.successor[e];
+            if (t==s){
+                diag+=mdp.probability[e];
+            }else{
+                sum+=mdp.probability[e]*V[t];
+            }
+        }
+        return (mdp.expectedReward[row]+gamma*sum)/(1.0-gamma*diag);
+    }
+}
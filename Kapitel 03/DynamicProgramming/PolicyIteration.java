@@ -1,5 +1,6 @@
 import greenfoot.*;  // (World, Actor, GreenfootImage, Greenfoot und MouseInfo)
 import java.util.*;
+import java.io.IOException;
 
 /**
  * An agent environment for computing optimal tactics in the hamster world using PolicyIteration.
@@ -29,6 +30,10 @@ public class PolicyIteration extends RL_GridEnv
     
     protected double[][] V; // S in NxN; V:S->R
     
+    protected CompiledMDP mdp = null; // compiled state space and transition tables
+    protected double[] Vs = null;     // V over the state ids of the compiled MDP
+    protected int[] pis = null;       // pi over the state ids of the compiled MDP
+    
     public static boolean DISPLAY_UPDATE = false;
 
     private HamsterWithAdjustablePolicy hamster = null; 
@@ -38,6 +43,21 @@ public class PolicyIteration extends RL_GridEnv
     private int k=0;  
    
     public final static int UNTIL_STABLE = -1;
+    
+    // Policy evaluation backends
+    public final static int EVALUATION_SWEEPS = 0;   // repeated sweeps until minDelta is reached
+    public final static int EVALUATION_SOR = 1;      // solves (I-GAMMA*P_pi)V=r_pi with successive over-relaxation
+    public final static int EVALUATION_MODIFIED = 2; // "modified policy iteration", at most K_SWEEPS sweeps per improvement
+    public static int EVALUATION = EVALUATION_SWEEPS;
+    public static int K_SWEEPS = 3;
+    public static double OMEGA = 1.0; // relaxation factor of the SOR solver, (I-GAMMA*P_pi) is not symmetric: OMEGA>1 may oscillate
+    public static int SOR_MAX_ITERATIONS = 10000;
+    private boolean evaluationConverged = true;
+    
+    public static boolean GRAIN_STATES = false; // DP over (tile, remaining grains), grains are consumed instead of terminal
+    protected GrainStateMDP grainMDP = null;
+    protected double[] Vg = null; // V over the packed product states of the grain state MDP
+    protected int[] pig = null;   // pi over the packed product states of the grain state MDP
 
     /**
      * Constructor for objects of class PolicyIteration.
@@ -48,7 +68,33 @@ public class PolicyIteration extends RL_GridEnv
         /*# Here you can change the arena: */
         //super(mapFlat);
         super(mapWithTrap1);
-        
+        initialize();
+    }
+    
+    /**
+     * Constructor for a PolicyIteration over an arena file (see ArenaFile and ArenaGenerator). Values and policy are
+     * only displayed if the arena has at most MAX_ARENA_ACTORS tiles.
+     * @param arena memory-mapped arena file
+     * @throws IllegalArgumentException if the arena has more than MAX_WORLD_TILES tiles
+     */
+    public PolicyIteration(ArenaFile arena)
+    {
+        super(arena);
+        initialize();
+    }
+    
+    /**
+     * Constructor for a PolicyIteration over an arena file.
+     * @param arenaFileName path of the arena file
+     * @throws IllegalArgumentException if the arena has more than MAX_WORLD_TILES tiles
+     */
+    public PolicyIteration(String arenaFileName) throws IOException
+    {
+        this(ArenaFile.open(arenaFileName));
+    }
+    
+    private void initialize()
+    {
         worldWidth = getWidth();
         worldHeight = getHeight();
         V = new double[worldWidth][worldHeight]; // initialize V(s)
@@ -59,23 +105,26 @@ public class PolicyIteration extends RL_GridEnv
         hamster.setArbitraryPolicy();
         
         iterationFinished=false; 
-        DISPLAY_UPDATE = true; // Must be switched on after the initializations, if required.
+        DISPLAY_UPDATE = ((long)worldWidth*worldHeight<=MAX_ARENA_ACTORS); // Must be switched on after the initializations, if required.
     }
     
     public void act() 
     {
         double maxDelta = 0.0;
+        if ((!iterationFinished)&&GRAIN_STATES){
+            iterate(UNTIL_STABLE);
+            iterationFinished=true;
+            this.updateDisplay();
+        }
         if (!iterationFinished){
-            boolean minDeltaReached = false; 
-            int c=0;
-            while (!minDeltaReached) { 
-                minDeltaReached=evaluateStates(); 
-                c++;
-            }
+            loadCompiled();
+            int c=evaluatePolicy();
             if (c>1) System.out.println("State space reevaluated.");
+            mdp.scatter(Vs,V);
             this.updateDisplay();
             
-            iterationFinished = policyImprovement();
+            boolean policystable = policyImprovement();
+            iterationFinished = policystable && evaluationConverged;
             if (iterationFinished) {
                 System.out.println("Policy is stable. Starting the hamster.");
             }else{
@@ -91,63 +140,158 @@ public class PolicyIteration extends RL_GridEnv
      */
     public void iterate(int n)
     {
+        if (GRAIN_STATES){
+            iterateGrainStates(n);
+            return;
+        }
         boolean policystable=true; int k=0;
+        loadCompiled();
         do{ 
             if ((n!=PolicyIteration.UNTIL_STABLE) && (k>=n)) break;
-            boolean minDeltaReached = false; int c=0;
-            while (!minDeltaReached) { 
-                minDeltaReached=evaluateStates(); 
-                c++;
-            }
-            policystable=policyImprovement();
+            evaluatePolicy();
+            policystable=policyImprovement() && evaluationConverged;
+            mdp.scatter(Vs,V);
             updateDisplay();
             k++; 
         }while(!policystable);  
     }
     
     /**
-     * Updates the policy if a better action option is found with the given state values.
+     * Policy iteration over the product state space (tile, remaining grains). The policy is evaluated with 
+     * sweeps layer by layer (starting with the layers with the fewest grains) and then improved in all layers. 
+     * V[x][y] and the policy of the hamster show the layer with all grains on the map.
+     * @param n maximum number of improvements
+     * @return number of improvements
      */
-    private boolean policyImprovement()
+    public int iterateGrainStates(int n)
     {
-        boolean policystable=true;
-        for ( int i=0;i<worldWidth;i++ ){
-            for( int j=0;j<worldHeight;j++ ){
-                List objects = this.getObjectsAt(i,j,Wall.class);
-                if (( objects.size()==0 ) && (!isTerminal(i,j))){
-                    Actionvalue maxAW = targetOrientedEvaluation(i,j);
-                    // Improvement:
-                    if (maxAW.a!=hamster.getPi(i,j)){
-                        hamster.setPi(i,j,maxAW.a);
+        CompiledMDP mdp = compiledMDP();
+        if ((grainMDP==null)||(grainMDP.mdp!=mdp)){
+            grainMDP = new GrainStateMDP(mdp,mdp.getStateId(getHamsterStartX(),getHamsterStartY()));
+            Vg = new double[grainMDP.size()];
+            pig = new int[grainMDP.size()];
+            for (int l=0;l<grainMDP.numLayers;l++){
+                for (int s=0;s<mdp.numStates;s++){
+                    if (grainMDP.isState(l,s)) pig[grainMDP.index(l,s)]=grainMDP.greedyAction(Vg,l,s,GAMMA);
+                }
+            }
+        }
+        boolean policystable=false; int k=0;
+        while (!policystable){
+            if ((n!=PolicyIteration.UNTIL_STABLE) && (k>=n)) break;
+            for (int l=grainMDP.numLayers-1;l>=0;l--){
+                while (grainMDP.evaluationSweep(Vg,pig,l,GAMMA)>minDelta);
+            }
+            policystable=true;
+            for (int l=0;l<grainMDP.numLayers;l++){
+                for (int s=0;s<mdp.numStates;s++){
+                    if (!grainMDP.isState(l,s)) continue;
+                    int i = grainMDP.index(l,s);
+                    int a = grainMDP.greedyAction(Vg,l,s,GAMMA);
+                    if ((a!=pig[i])&&(grainMDP.q(Vg,l,s,a,GAMMA)>grainMDP.q(Vg,l,s,pig[i],GAMMA))){
+                        pig[i]=a;
                         policystable=false;
                     }
                 }
             }
+            k++;
         }
-        return policystable;
+        int layer = grainMDP.getLayer(grainMDP.allGrains);
+        if (layer>=0){
+            clearV();
+            grainMDP.scatter(Vg,layer,V);
+            for (int s=0;s<mdp.numStates;s++){
+                if (grainMDP.isState(layer,s)) hamster.setPi(mdp.cellX[s],mdp.cellY[s],pig[grainMDP.index(layer,s)]);
+            }
+        }
+        return k;
     }
     
     /**
-     * Performs a sweep over all states s of the state space S (makes a "sweep").
+     * Updates the policy if a better action option is found with the given state values.
      */
-    private boolean evaluateStates()
+    private boolean policyImprovement()
     {
-        List objects;
-        double maxDelta=0.0;
-        // For each field s from S (which is not a wall or the terminal state), update the field value V(s).
-        for ( int i=0;i<worldWidth;i++ ){
-            for( int j=0;j<worldHeight;j++ ){
-                objects = this.getObjectsAt(i,j,Wall.class);
-                if (( objects.size()==0 ) && (!isTerminal(i,j))){
-                    double v_alt = V[i][j]; 
-                    Actionvalue maxAW = policybasedEvaluation(i,j);
-                    V[i][j] = maxAW.v;
-                    double delta = V[i][j]-v_alt;          
-                    if (maxDelta<delta) maxDelta = delta;
-                }
+        boolean policystable = mdp.improvePolicy(Vs,pis,GAMMA);
+        if (!policystable){
+            for (int s=0;s<mdp.numStates;s++){
+                if (mdp.sweep[s]) hamster.setPi(mdp.cellX[s],mdp.cellY[s],pis[s]);
             }
         }
-        return (maxDelta<=minDelta);
+        return policystable;
+    }
+    
+    /**
+     * Evaluates the current policy with the selected backend (EVALUATION). In the modified mode the 
+     * evaluation counts as converged only if it reached minDelta before K_SWEEPS sweeps.
+     * @return number of sweeps (SOR: iterations of the solver)
+     */
+    private int evaluatePolicy()
+    {
+        int c=evaluatePolicy(mdp,Vs,pis,EVALUATION,GAMMA,minDelta,UNTIL_STABLE);
+        evaluationConverged=(EVALUATION!=EVALUATION_MODIFIED)||(c<K_SWEEPS);
+        return c;
+    }
+    
+    /**
+     * Policy evaluation over a compiled MDP, starting from the given values (i.e. from the evaluation of the
+     * previous policy). Used by the world and by DPBenchmark.
+     * 
+     * EVALUATION_SWEEPS: in-place sweeps until the largest increase within a sweep is at most minDelta.
+     * EVALUATION_MODIFIED: as EVALUATION_SWEEPS, but at most K_SWEEPS sweeps.
+     * EVALUATION_SOR: solves the linear system (I-gamma*P_pi)V = r_pi with successive over-relaxation (OMEGA)
+     * until the error bound maxChange*gamma/(1-gamma) of the last iteration falls below minDelta.
+     * 
+     * @param mdp compiled MDP
+     * @param V state values over the state ids (start values and result)
+     * @param pi action for each state id
+     * @param evaluation evaluation backend
+     * @param gamma discount
+     * @param minDelta termination criterion
+     * @param maxSweeps maximum number of sweeps of EVALUATION_SWEEPS, UNTIL_STABLE for "until stable"
+     * @return number of sweeps (SOR: iterations of the solver)
+     */
+    public static int evaluatePolicy(CompiledMDP mdp, double[] V, int[] pi, int evaluation, double gamma, double minDelta, int maxSweeps)
+    {
+        int c=0;
+        if (evaluation==EVALUATION_SOR){
+            do{
+                c++;
+            }while((mdp.sorSweep(V,pi,gamma,OMEGA)*gamma/(1.0-gamma)>=minDelta)&&(c<SOR_MAX_ITERATIONS));
+            return c;
+        }
+        int limit = (evaluation==EVALUATION_MODIFIED) ? K_SWEEPS : maxSweeps;
+        while ((limit<0)||(c<limit)){
+            c++;
+            if (mdp.evaluationSweep(V,pi,gamma)<=minDelta) break;
+        }
+        return c;
+    }
+    
+    /**
+     * Returns the compiled MDP of the arena, (re)compiles it if the map or the transit model has changed.
+     * @return compiled MDP
+     */
+    protected CompiledMDP compiledMDP()
+    {
+        if ((mdp==null)||(!mdp.isCompiledFor(RL_GridWorldAgent.transitModel))){
+            mdp = new CompiledMDP(this,RL_GridWorldAgent.transitModel);
+            Vs = new double[mdp.numStates];
+            pis = new int[mdp.numStates];
+        }
+        return mdp;
+    }
+    
+    /**
+     * Transfers V(s) and the policy of the hamster into the arrays over the compiled state ids.
+     */
+    protected void loadCompiled()
+    {
+        CompiledMDP mdp = compiledMDP();
+        mdp.gather(V,Vs);
+        for (int s=0;s<mdp.numStates;s++){
+            pis[s] = mdp.sweep[s] ? hamster.getPi(mdp.cellX[s],mdp.cellY[s]) : -1;
+        }
     }
     
     /**
@@ -289,4 +433,27 @@ public class PolicyIteration extends RL_GridEnv
             }
         }        
    } 
+    
+    @Override
+    public void removeObject(Actor object)
+    {
+        super.removeObject(object);
+        if (isMapElement(object)) mdp=null;
+    }
+
+    @Override
+    public void addObject(Actor object, int x, int y)
+    {
+        super.addObject(object,x,y); 
+        if (isMapElement(object)) mdp=null;
+    }
+    
+    /**
+     * Tests if an object changes the compiled state space (walls, traps and grains).
+     */
+    private boolean isMapElement(Actor object)
+    {
+        Class<?> c = object.getClass();
+        return (c==Wall.class)||(c==Trap.class)||(c==Grain.class);
+    }
 }
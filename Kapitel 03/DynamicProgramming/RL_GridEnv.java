@@ -171,6 +171,11 @@ public class RL_GridEnv extends Territory
     private int hamsterY = 0;
     
     protected String[] fieldDescription = null;
+    private boolean fieldDescriptionCopied = false;
+    
+    protected ArenaFile arena = null; // file-backed map (instead of the field description)
+    public static int MAX_ARENA_ACTORS = 10000; // larger arena files are not populated with Greenfoot actors
+    public static long MAX_WORLD_TILES = 4000L*4000L; // larger arena files can only be solved headless (CompiledMDP)
                   
     /**
      * Constructor for a grid world territory.
@@ -180,7 +185,36 @@ public class RL_GridEnv extends Territory
     {
        super(fieldDescription.length,fieldDescription[0].length());
        this.fieldDescription = fieldDescription;
-       arenaSetup(fieldDescription);
+       arenaSetup();
+    }
+    
+    /**
+     * Constructor for a grid world territory with a file-backed map. Rewards, terminal states and walls are 
+     * read directly from the arena file. Walls, grains and traps are only placed as actors if the arena has 
+     * at most MAX_ARENA_ACTORS tiles, larger arenas get 1-pixel cells without tiled background.
+     * @param arena memory-mapped arena file
+     * @throws IllegalArgumentException if the arena has more than MAX_WORLD_TILES tiles
+     */
+    public RL_GridEnv(ArenaFile arena)
+    {
+       super(arena.getHeight(),arena.getWidth(),cellSizeOf(arena));
+       this.arena = arena;
+       setHamsterStart(arena.getStartX(),arena.getStartY());
+       if ((long)arena.getWidth()*arena.getHeight()<=MAX_ARENA_ACTORS) arenaSetup();
+    }
+    
+    /**
+     * Cell size of the world for an arena file.
+     */
+    private static int cellSizeOf(ArenaFile arena)
+    {
+       long tiles = (long)arena.getWidth()*arena.getHeight();
+       if (tiles>MAX_WORLD_TILES){
+           throw new IllegalArgumentException("RL_GridEnv: arena with "+tiles+" tiles is too large for a"
+                                              +" Greenfoot world (MAX_WORLD_TILES="+MAX_WORLD_TILES+"),"
+                                              +" solve it headless with CompiledMDP(ArenaFile), see DPBenchmark");
+       }
+       return (tiles<=MAX_ARENA_ACTORS) ? TILE_SIZE : 1;
     }
     
     /**
@@ -218,9 +252,18 @@ public class RL_GridEnv extends Territory
      * @return reward at the specified position in the grid.
      */
     public double getReward(int x, int y)
+    {
+        return rewardOfElement(this.getMapElementAt(x,y));
+    }
+    
+    /**
+     * Returns the reward for entering a tile with the given map element.
+     * @param element map element ('0','1','2','3','F','M','H')
+     * @return reward for entering the tile
+     */
+    public static double rewardOfElement(char element)
     {
         double reward = 0;
-        char element = this.getMapElementAt(x,y);
         switch (element) {
             case '1': reward=RL_GridEnv.rewardForAGrain;
                       break;
@@ -252,7 +295,16 @@ public class RL_GridEnv extends Territory
      */
     public boolean isTerminal(int x, int y)
     {
-        char element = this.getMapElementAt(x,y);
+        return isTerminalElement(this.getMapElementAt(x,y));
+    }
+    
+    /**
+     * Tests whether a tile with the given map element is terminal.
+     * @param element map element ('0','1','2','3','F','M','H')
+     * @return true if the element is terminal.
+     */
+    public static boolean isTerminalElement(char element)
+    {
         switch (element) {
             case '1': return true;
             case '2': return true;
@@ -314,10 +366,29 @@ public class RL_GridEnv extends Territory
     /**
      * Uses map array to identify elements of the, no moveable actors can be recognized (critical for execution speed).
      */
-    private char getMapElementAt(int x, int y){
+    protected char getMapElementAt(int x, int y){
+        if (arena!=null) return arena.getElementAt(x,y);
         return (fieldDescription[y]).charAt(x);
     }
     
+    /**
+     * Changes an element of the map, e.g. if walls, traps or grains are placed into the territory by hand. 
+     * The arena constant is copied before the first change.
+     * @param x column in the gridworld
+     * @param y row in the gridworld
+     * @param element new map element ('0','1','2','3','F','M')
+     */
+    protected void setMapElementAt(int x, int y, char element){
+        if (arena!=null) return; // arena files are read-only
+        if (!fieldDescriptionCopied){
+            fieldDescription = fieldDescription.clone();
+            fieldDescriptionCopied = true;
+        }
+        char[] row = fieldDescription[y].toCharArray();
+        row[x] = element;
+        fieldDescription[y] = new String(row);
+    }
+    
     /**
      * Storing a object for displaying state values on all fields where there is no wall.
      */
@@ -338,15 +409,14 @@ public class RL_GridEnv extends Territory
    } 
     
     /**
-     * Produces the elements of the agentsn environment according to the field description string.
-     * @param field
+     * Produces the elements of the agents environment according to the map, i.e. the field description string
+     * or the arena file (read with getMapElementAt).
      */
-    public void arenaSetup(String[] field)
+    public void arenaSetup()
     { 
-        for (int i=0; i<field.length; i++){
-            for (int j=0; j<field[i].length(); j++){
-                char c = field[i].charAt(j);
-                switch (c) {
+        for (int i=0; i<getHeight(); i++){
+            for (int j=0; j<getWidth(); j++){
+                switch (getMapElementAt(j,i)) {
                     case 'M': 
                             this.addObject(new Wall(),j,i);
                             break;
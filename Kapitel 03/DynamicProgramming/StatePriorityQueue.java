@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * Priority queue over the state ids of a compiled MDP (binary max-heap with position index). Each state is
+ * contained at most once; if a state is inserted again, its priority is raised to the larger value. Works
+ * on primitive arrays only, so no objects are created while the queue is in use.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class StatePriorityQueue
+{
+    private final int[] heap;        // state ids
+    private final double[] priority; // priority of the state ids
+    private final int[] pos;         // position of a state id in the heap, -1 if not contained
+    private int size = 0;
+
+    /**
+     * Creates an empty queue for the state ids 0..numStates-1.
+     * @param numStates number of states
+     */
+    public StatePriorityQueue(int numStates)
+    {
+        heap = new int[numStates];
+        priority = new double[numStates];
+        pos = new int[numStates];
+        Arrays.fill(pos,-1);
+    }
+
+    public boolean isEmpty()
+    {
+        return size==0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Inserts a state or raises its priority if it is already contained.
+     * @param s state id
+     * @param p priority
+     */
+    public void add(int s, double p)
+    {
+        int i = pos[s];
+        if (i<0){
+            i = size++;
+            heap[i]=s;
+            pos[s]=i;
+            priority[s]=p;
+        }else{
+            if (p<=priority[s]) return;
+            priority[s]=p;
+        }
+        siftUp(i);
+    }
+
+    /**
+     * Removes the state with the highest priority.
+     * @return state id
+     */
+    public int poll()
+    {
+        int s = heap[0];
+        pos[s]=-1;
+        size--;
+        if (size>0){
+            heap[0]=heap[size];
+            pos[heap[0]]=0;
+            siftDown(0);
+        }
+        return s;
+    }
+
+    /**
+     * Removes all states.
+     */
+    public void clear()
+    {
+        for (int i=0;i<size;i++) pos[heap[i]]=-1;
+        size=0;
+    }
+
+    private void siftUp(int i)
+    {
+        int s = heap[i];
+        while (i>0){
+            int parent = (i-1)>>1;
+            if (priority[heap[parent]]>=priority[s]) break;
+            heap[i]=heap[parent];
+            pos[heap[i]]=i;
+            i=parent;
+        }
+        heap[i]=s;
+        pos[s]=i;
+    }
+
+    private void siftDown(int i)
+    {
+        int s = heap[i];
+        while (true){
+            int child = 2*i+1;
+            if (child>=size) break;
+            if ((child+1<size)&&(priority[heap[child+1]]>priority[heap[child]])) child++;
+            if (priority[heap[child]]<=priority[s]) break;
+            heap[i]=heap[child];
+            pos[heap[i]]=i;
+            i=child;
+        }
+        heap[i]=s;
+        pos[s]=i;
+    }
+}
@@ -11,6 +11,8 @@ import java.util.List;
  */
 public class Territory extends World {
 
+    public static final int TILE_SIZE = 35; // cell size in pixels (size of the tile image)
+
     /**
      * Creates a new territory with 10x10 tiles
      */
@@ -25,8 +27,23 @@ public class Territory extends World {
      * @param columns number of columns
      */
     public Territory(int rows, int columns) {
-        super(columns < 1 ? 10 : columns, rows < 1 ? 10 : rows, 35);
-        setBackground("kachel.jpg");
+        this(rows, columns, TILE_SIZE);
+    }
+
+    /**
+     * Creates a new territory in the specified size and cell size. The tiled background
+     * is only set for cells of TILE_SIZE pixels, a territory with 1-pixel cells (for very
+     * large arenas) keeps a plain background.
+     * 
+     * @param rows  number of rows
+     * @param columns number of columns
+     * @param cellSize size of a cell in pixels
+     */
+    public Territory(int rows, int columns, int cellSize) {
+        super(columns < 1 ? 10 : columns, rows < 1 ? 10 : rows, cellSize);
+        if (cellSize == TILE_SIZE) {
+            setBackground("kachel.jpg");
+        }
         setPaintOrder(Wall.class, Hamster.class, Grain.class);
     }
 
@@ -1,5 +1,7 @@
 import greenfoot.*;  // (World, Actor, GreenfootImage, Greenfoot und MouseInfo)
 import java.util.*;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * An agent environment for calculating the valuation of the states V(s) in the hamster world using value iteration.
@@ -29,7 +31,31 @@ public class ValueIteration extends RL_GridEnv
     
     protected double[][] V; // S in NxN; V:S->R
     
+    protected CompiledMDP mdp = null; // compiled state space and transition tables
+    protected double[] Vs = null;     // V over the state ids of the compiled MDP
+    protected double[] Vs_next = null; // second buffer for synchronous sweeps
+    
     public static boolean DISPLAY_UPDATE = false;
+    
+    public static boolean PARALLEL_SWEEPS = false; // synchronous (Jacobi) sweeps on all cores instead of in-place sweeps
+    protected static ForkJoinPool sweepPool = ForkJoinPool.commonPool();
+    protected double sweepsPerSecond = 0.0;
+    
+    public static boolean PRIORITIZED_SWEEPING = true; // re-solve map edits incrementally instead of a complete new iteration
+    protected StatePriorityQueue queue = null;
+    
+    public static boolean REAL_TIME_DP = false; // trial-based RTDP from the position of the hamster instead of sweeps
+    public static int RTDP_CONVERGENCE_TRIALS = 20; // trials in a row without a change of V(start) greater than minDelta
+    
+    public static boolean MULTIGRID = false; // coarse-to-fine solution for large arenas
+    protected MultigridSolver multigrid = null;
+    
+    public static boolean STENCIL_KERNEL = false; // synchronous sweeps with the (vectorizable) stencil kernel
+    protected StencilKernel stencil = null;
+    
+    public static boolean GRAIN_STATES = false; // DP over (tile, remaining grains), grains are consumed instead of terminal
+    protected GrainStateMDP grainMDP = null;
+    protected double[] Vg = null; // V over the packed product states of the grain state MDP
 
     private GreedyHamster hamster = null; 
 
@@ -48,7 +74,34 @@ public class ValueIteration extends RL_GridEnv
         /*# Here you can change the arena: */
         super(mapFlat);
         //super(mapWithTrap1);
-        
+        initialize();
+    }
+    
+    /**
+     * Constructor for a ValueIteration over an arena file (see ArenaFile and ArenaGenerator). The values are only
+     * displayed if the arena has at most MAX_ARENA_ACTORS tiles.
+     * @param arena memory-mapped arena file
+     * @throws IllegalArgumentException if the arena has more than MAX_WORLD_TILES tiles
+     */
+    public ValueIteration(ArenaFile arena)
+    {
+        super(arena);
+        initialize();
+    }
+    
+    /**
+     * Constructor for a ValueIteration over an arena file.
+     * @param arenaFileName path of the arena file
+     * @throws IllegalArgumentException if the arena has more than MAX_WORLD_TILES tiles
+     */
+    public ValueIteration(String arenaFileName) throws IOException
+    {
+        this(ArenaFile.open(arenaFileName));
+    }
+    
+    private void initialize()
+    {
+        DISPLAY_UPDATE = false; // static, may still be set by a former (smaller) world
         worldWidth = getWidth();
         worldHeight = getHeight();
         V = new double[worldWidth][worldHeight]; // initialize V(s)
@@ -58,13 +111,18 @@ public class ValueIteration extends RL_GridEnv
         this.addObject(hamster,getHamsterStartX(),getHamsterStartY());
         
         iterationFinished=false; 
-        DISPLAY_UPDATE = true;
+        DISPLAY_UPDATE = ((long)worldWidth*worldHeight<=MAX_ARENA_ACTORS);
     }
 
     public void act() 
     {
         if(!iterationFinished) { 
-            iterationFinished=evaluateStates();
+            if (REAL_TIME_DP||GRAIN_STATES){
+                iterate(UNTIL_STABLE);
+                iterationFinished=true;
+            }else{
+                iterationFinished=evaluateStates();
+            }
             this.updateDisplay();
         }
     }
@@ -75,38 +133,253 @@ public class ValueIteration extends RL_GridEnv
      */
     public void iterate(int n)
     {
+        if (REAL_TIME_DP){
+            iterateRTDP(n);
+            return;
+        }
+        if (GRAIN_STATES){
+            iterateGrainStates(n);
+            return;
+        }
         clearV();
+        CompiledMDP mdp = compiledMDP();
+        mdp.gather(V,Vs);
         int k=0;
-        boolean minDeltaReached = false;
-        while (!minDeltaReached) { 
-            if ((n!=UNTIL_STABLE) && (k>=n)) break;   
-            minDeltaReached=evaluateStates(); 
-            k++;
-        }    
+        long t0 = System.nanoTime();
+        if (MULTIGRID){
+            if (multigrid==null) multigrid = new MultigridSolver(mdp);
+            k=multigrid.solve(Vs,GAMMA,minDelta,n);
+        }else if (STENCIL_KERNEL){
+            if (stencil==null) stencil = new StencilKernel(mdp);
+            k=stencil.solve(Vs,GAMMA,minDelta,n);
+        }else{
+            k=valueIteration(mdp,Vs,PARALLEL_SWEEPS ? Vs_next : null,GAMMA,minDelta,n);
+        }
+        mdp.scatter(Vs,V);
+        double seconds = (System.nanoTime()-t0)/1e9;
+        if (seconds>0) sweepsPerSecond = k/seconds;
+        if (PARALLEL_SWEEPS) System.out.println(k+" sweeps, "+Math.round(sweepsPerSecond)+" sweeps/s on "+sweepPool.getParallelism()+" threads.");
     }
     
     /**
-     * Performs a sweep over all states s of the state space S (makes a "sweep").
+     * Real-time dynamic programming (RTDP). Performs trials from the current position of the hamster (or the 
+     * start position): in each visited state the greedy action is backed up and the successor state is sampled 
+     * from the transition model, until a terminal state is reached. Only states that are reachable under the 
+     * greedy policy are backed up. V is initialized optimistically with an upper bound, so that the greedy policy
+     * explores unvisited states. The iteration stops when V(start) has not changed by more than minDelta for 
+     * RTDP_CONVERGENCE_TRIALS trials.
+     * @param n maximum number of trials
+     * @return number of trials
      */
-    private boolean evaluateStates()
+    public int iterateRTDP(int n)
     {
-        List objects;
-        double maxDelta=0.0;
-        // For each field s from S (which is not a wall or the terminal state), update the field value V(s).
-        for ( int i=0;i<worldWidth;i++ ){
-            for( int j=0;j<worldHeight;j++ ){
-                objects = this.getObjectsAt(i,j,Wall.class);
-                if (( objects.size()==0 ) && (!isTerminal(i,j))){
-                    double v_alt = V[i][j]; 
-                    Actionvalue maxAW = targetOrientedEvaluation(i,j);
-                    V[i][j] = maxAW.v;
-                    double delta = V[i][j]-v_alt;          
-                    if (maxDelta<delta) maxDelta = delta;
+        clearV();
+        CompiledMDP mdp = compiledMDP();
+        double maxReward = 0.0;
+        for (int s=0;s<mdp.numStates;s++) maxReward=Math.max(maxReward,mdp.reward[s]);
+        double upperBound = maxReward/(1.0-GAMMA);
+        for (int s=0;s<mdp.numStates;s++) Vs[s] = mdp.sweep[s] ? upperBound : 0.0;
+        
+        int start = -1;
+        if (hamster.getWorld()==this) start = mdp.getStateId(hamster.getX(),hamster.getY());
+        if (start<0) start = mdp.getStateId(getHamsterStartX(),getHamsterStartY());
+        int trials=0;
+        if ((start>=0)&&(mdp.sweep[start])){
+            int maxTrialLength = 1000+mdp.numStates;
+            int stableTrials = 0;
+            while (stableTrials<RTDP_CONVERGENCE_TRIALS){
+                if ((n!=UNTIL_STABLE) && (trials>=n)) break;
+                double v_start = Vs[start];
+                int s = start;
+                for (int step=0;(step<maxTrialLength)&&(mdp.sweep[s]);step++){
+                    int a = mdp.greedyAction(Vs,s,GAMMA);
+                    if (a<0) break;
+                    Vs[s] = mdp.q(Vs,s,a,GAMMA);
+                    s = sampleSuccessor(mdp,s,a);
                 }
+                trials++;
+                if (Math.abs(Vs[start]-v_start)<=minDelta){
+                    stableTrials++;
+                }else{
+                    stableTrials=0;
+                }
+            }
+        }
+        mdp.scatter(Vs,V);
+        return trials;
+    }
+    
+    /**
+     * Value iteration over the product state space (tile, remaining grains). The layers of the grain state MDP
+     * are solved one after another, starting with the layers with the fewest grains, since a layer only depends
+     * on itself and on layers with fewer grains. V[x][y] shows the layer with all grains on the map.
+     * @param n maximum number of sweeps per layer
+     * @return total number of sweeps
+     */
+    public int iterateGrainStates(int n)
+    {
+        clearV();
+        GrainStateMDP grainMDP = grainStateMDP();
+        Arrays.fill(Vg,0.0);
+        int k=0;
+        long t0 = System.nanoTime();
+        for (int l=grainMDP.numLayers-1;l>=0;l--){
+            int c=0;
+            while ((n==UNTIL_STABLE)||(c<n)){
+                c++;
+                if (grainMDP.sweep(Vg,l,GAMMA)<=minDelta) break;
             }
+            k+=c;
+        }
+        double seconds = (System.nanoTime()-t0)/1e9;
+        if (seconds>0) sweepsPerSecond = k/seconds;
+        int layer = grainMDP.getLayer(grainMDP.allGrains);
+        if (layer>=0) grainMDP.scatter(Vg,layer,V);
+        return k;
+    }
+    
+    /**
+     * Returns the value of a product state (tile, remaining grains) of the last call of "iterateGrainStates".
+     * @param x X-component of the state (column).
+     * @param y Y-component of the state (row).
+     * @param grains subset of the remaining grains (bit g for grain g in the order of the state ids)
+     * @return state value, 0 if the state is not reachable or terminal.
+     */
+    public double getV(int x, int y, int grains)
+    {
+        if ((grainMDP==null)||(Vg==null)) return 0.0;
+        int s = grainMDP.mdp.getStateId(x,y);
+        int layer = grainMDP.getLayer(grains);
+        if ((s<0)||(layer<0)||(!grainMDP.isState(layer,s))) return 0.0;
+        return Vg[grainMDP.index(layer,s)];
+    }
+    
+    /**
+     * Returns the grain state MDP of the arena, builds it if the compiled MDP has changed.
+     * @return product state space (tile, remaining grains)
+     */
+    protected GrainStateMDP grainStateMDP()
+    {
+        CompiledMDP mdp = compiledMDP();
+        if ((grainMDP==null)||(grainMDP.mdp!=mdp)){
+            grainMDP = new GrainStateMDP(mdp,mdp.getStateId(getHamsterStartX(),getHamsterStartY()));
+            Vg = new double[grainMDP.size()];
+        }
+        return grainMDP;
+    }
+    
+    /**
+     * Samples a successor state s' according to P(s'|s,a).
+     */
+    private int sampleSuccessor(CompiledMDP mdp, int s, int a)
+    {
+        int row = s*mdp.numActions+a;
+        double e = RL_GridWorldAgent.random.nextDouble();
+        double p = 0.0;
+        int last = mdp.rowStart[row+1]-1;
+        for (int i=mdp.rowStart[row];i<last;i++){
+            p+=mdp.probability[i];
+            if (e<p) return mdp.successor[i];
         }
+        return mdp.successor[last];
+    }
+    
+    /**
+     * Returns the number of sweeps per second measured in the last call of "iterate".
+     * @return sweeps per second
+     */
+    public double getSweepsPerSecond()
+    {
+        return sweepsPerSecond;
+    }
+    
+    /**
+     * Performs a sweep over all states s of the state space S (makes a "sweep").
+     */
+    private boolean evaluateStates()
+    {
+        CompiledMDP mdp = compiledMDP();
+        mdp.gather(V,Vs);
+        double maxDelta = sweep(mdp);
+        mdp.scatter(Vs,V);
         return (maxDelta<=minDelta);
     }
+    
+    /**
+     * Value iteration over a compiled MDP until the largest increase within a sweep is at most minDelta. The
+     * sweeps run in place, or synchronously on the sweep pool if a second buffer is given. Used by "iterate" and
+     * by DPBenchmark.
+     * @param mdp compiled MDP
+     * @param V state values over the state ids (start values and result)
+     * @param V_next second buffer for synchronous sweeps, null for in-place sweeps
+     * @param gamma discount
+     * @param minDelta termination criterion
+     * @param maxSweeps maximum number of sweeps, UNTIL_STABLE for "until stable"
+     * @return number of sweeps
+     */
+    public static int valueIteration(CompiledMDP mdp, double[] V, double[] V_next, double gamma, double minDelta, int maxSweeps)
+    {
+        double[] current = V;
+        int k=0;
+        while ((maxSweeps<0)||(k<maxSweeps)){
+            k++;
+            double maxDelta;
+            if (V_next==null){
+                maxDelta = mdp.sweep(current,gamma);
+            }else{
+                maxDelta = sweepPool.invoke(new JacobiSweep(mdp,current,V_next,gamma,0,mdp.numStates));
+                double[] h = current;
+                current = V_next;
+                V_next = h;
+            }
+            if (maxDelta<=minDelta) break;
+        }
+        if (current!=V) System.arraycopy(current,0,V,0,V.length);
+        return k;
+    }
+    
+    /**
+     * Sweep over the compiled state space, in place or synchronously in parallel (PARALLEL_SWEEPS).
+     * @param mdp compiled MDP
+     * @return maximum increase of a state value
+     */
+    private double sweep(CompiledMDP mdp)
+    {
+        if (PARALLEL_SWEEPS) return parallelSweep(mdp);
+        return mdp.sweep(Vs,GAMMA);
+    }
+    
+    /**
+     * Synchronous sweep, the state ids are split into bands that are computed on the sweep pool. The new values
+     * are written into the second buffer, which then becomes the current V. 
+     * @param mdp compiled MDP
+     * @return maximum increase of a state value (reduced over all bands)
+     */
+    private double parallelSweep(CompiledMDP mdp)
+    {
+        double maxDelta = sweepPool.invoke(new JacobiSweep(mdp,Vs,Vs_next,GAMMA,0,mdp.numStates));
+        double[] h = Vs;
+        Vs = Vs_next;
+        Vs_next = h;
+        return maxDelta;
+    }
+    
+    /**
+     * Returns the compiled MDP of the arena, (re)compiles it if the map or the transit model has changed.
+     * @return compiled MDP
+     */
+    protected CompiledMDP compiledMDP()
+    {
+        if ((mdp==null)||(!mdp.isCompiledFor(RL_GridWorldAgent.transitModel))){
+            mdp = new CompiledMDP(this,RL_GridWorldAgent.transitModel);
+            Vs = new double[mdp.numStates];
+            Vs_next = new double[mdp.numStates];
+            queue = null;
+            multigrid = null;
+            stencil = null;
+        }
+        return mdp;
+    }
   
     /**
      * Sum over P(s'|s,a)*V(s') ,for all s' from S ( for which P(s')>0 ), i.e. add up probability*valuation for each subsequent state.
@@ -229,12 +502,74 @@ public class ValueIteration extends RL_GridEnv
         return 0.0;
     }
     
+    /**
+     * Prioritized sweeping after a change of the map at the tile (x,y). Starting from the current V(s), only the
+     * states around the tile and their predecessors are queued with their Bellman residual. The state with the 
+     * largest residual is backed up first, and the residuals are propagated to the predecessors as long as 
+     * they exceed minDelta.
+     * @param x X-component of the changed tile (column).
+     * @param y Y-component of the changed tile (row).
+     * @return number of backups
+     */
+    public int resolveAround(int x, int y)
+    {
+        CompiledMDP mdp = compiledMDP();
+        mdp.gather(V,Vs);
+        mdp.buildPredecessors();
+        if (queue==null) queue = new StatePriorityQueue(mdp.numStates);
+        queueWithPredecessors(mdp,mdp.getStateId(x,y));
+        for (int n=0;n<neighborStates.length;n++){
+            queueWithPredecessors(mdp,mdp.getStateId(x+neighborStates[n][0],y+neighborStates[n][1]));
+        }
+        int backups=0;
+        while (!queue.isEmpty()){
+            int s = queue.poll();
+            Vs[s] = mdp.maxQ(Vs,s,GAMMA);
+            backups++;
+            for (int i=0;i<mdp.getNumberOfPredecessors(s);i++){
+                queueResidual(mdp,mdp.getPredecessor(s,i));
+            }
+        }
+        mdp.scatter(Vs,V);
+        return backups;
+    }
+    
+    private void queueWithPredecessors(CompiledMDP mdp, int s)
+    {
+        if (s<0) return;
+        queueResidual(mdp,s);
+        for (int i=0;i<mdp.getNumberOfPredecessors(s);i++){
+            queueResidual(mdp,mdp.getPredecessor(s,i));
+        }
+    }
+    
+    /**
+     * Queues a state if its Bellman residual |max_a Q(s,a)-V(s)| exceeds minDelta.
+     */
+    private void queueResidual(CompiledMDP mdp, int s)
+    {
+        if (!mdp.sweep[s]) return;
+        double residual = Math.abs(mdp.maxQ(Vs,s,GAMMA)-Vs[s]);
+        if (residual>minDelta) queue.add(s,residual);
+    }
+    
     @Override
     public void removeObject(Actor object)
     {
+        boolean mapEdit = (V!=null) && isMapElement(object) && (object.getWorld()==this);
+        int x = mapEdit ? object.getX() : -1;
+        int y = mapEdit ? object.getY() : -1;
         super.removeObject(object);
+        if (isMapElement(object)) mdp=null;
+        if (mapEdit && this.getObjectsAt(x,y,object.getClass()).isEmpty()){
+            setMapElementAt(x,y,'0');
+        }
         if (DISPLAY_UPDATE) {
-            iterate(ValueIteration.UNTIL_STABLE);
+            if ((!PRIORITIZED_SWEEPING)||GRAIN_STATES){
+                iterate(ValueIteration.UNTIL_STABLE);
+            }else if (mapEdit){
+                resolveAround(x,y);
+            }
             updateDisplay();
         }
     }
@@ -243,7 +578,10 @@ public class ValueIteration extends RL_GridEnv
     public void addObject(Actor object, int x, int y)
     {
         super.addObject(object,x,y); 
+        if (isMapElement(object)) mdp=null;
         if (V==null) return;
+        boolean mapEdit = isMapElement(object) && (object.getWorld()==this);
+        if (mapEdit) setMapElementAt(x,y,mapElementOf(object));
         if (DISPLAY_UPDATE){ 
            if (object.getClass()==Wall.class) V[x][y]=0.0;
            if ((object.getClass()==Trap.class)||(object.getClass()==Grain.class)){
@@ -254,8 +592,32 @@ public class ValueIteration extends RL_GridEnv
                     v.setTerminal(true);
                }
            }
-           iterate(ValueIteration.UNTIL_STABLE);
+           if ((!PRIORITIZED_SWEEPING)||GRAIN_STATES){
+               iterate(ValueIteration.UNTIL_STABLE);
+           }else if (mapEdit){
+               resolveAround(x,y);
+           }
            updateDisplay();
         }
     }
+    
+    /**
+     * Tests if an object changes the compiled state space (walls, traps and grains).
+     */
+    private boolean isMapElement(Actor object)
+    {
+        Class<?> c = object.getClass();
+        return (c==Wall.class)||(c==Trap.class)||(c==Grain.class);
+    }
+    
+    /**
+     * Returns the map character for a wall, trap or grain.
+     */
+    private char mapElementOf(Actor object)
+    {
+        if (object.getClass()==Wall.class) return 'M';
+        if (object.getClass()==Trap.class) return 'F';
+        int number = ((Grain)object).getNumber();
+        return (char)('0'+Math.max(1,Math.min(number,3)));
+    }
 }
@@ -0,0 +1,173 @@
+import greenfoot.*;
+
+/**
+ * Optimal playing TicTacToe agent based on NegaMax with alpha-beta pruning and a transposition table.
+ *
+ * Positions that are reached by different move orders are searched only once: the results are stored in a
+ * table that is indexed directly with the ternary state key (board and player to move, the same key as in
+ * QLearning.calculateStateKey) and kept across moves and games. Since the value of a position that was searched
+ * with a narrowed window is only a bound, each entry is marked as exact, lower bound or upper bound. The moves
+ * are tried in a fixed order (center, corners, edges) with the best move from the table first, and no lists
+ * are created during the search.
+ *
+ * The agent rates the actions of the root with the full window, so it returns the same values as NegaMax.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class AlphaBetaNegaMax extends NegaMax
+{
+    private static final byte EMPTY = 0;   // no entry
+    private static final byte EXACT = 1;   // value is exact
+    private static final byte LOWER = 2;   // value is a lower bound (cut-off, value>=beta)
+    private static final byte UPPER = 3;   // value is an upper bound (no move reached alpha)
+
+    private static final int[] moveOrder = {4,0,2,6,8,1,3,5,7};
+    private static final int[] power = {1,3,9,27,81,243,729,2187,6561,19683};
+
+    // transposition table over the ternary state keys (3^10 entries)
+    private final byte[] ttFlag = new byte[59049];
+    private final byte[] ttValue = new byte[59049]; // value / REWARD_WIN (-1, 0, 1)
+    private final byte[] ttMove = new byte[59049];  // best move, -1 if unknown
+
+    private int nodes = 0;
+
+    public AlphaBetaNegaMax(char player,TicTacToe_Env env, String ident)
+    {
+        super(player,env, ident);
+    }
+
+    /**
+     * Evaluates an action in a state for one of the players with NegaMax, alpha-beta pruning and the
+     * transposition table. The actions of the agent are selected with the (greedy-)policy of the superclass.
+     *
+     * @param action Number of the field into which is set.
+     * @param player the character of the player ('x' or 'o')
+     * @return Evaluation of the action from the point of view of the specified player
+     */
+    @Override
+    public double evaluateAction( int action, char player )
+    {
+        int key = 0;
+        for (int i=0;i<9;i++) key += digit(state[i])*power[i];
+        char opponent = (player=='o') ? 'x':'o';
+        state[action]=player;
+        double value;
+        if (isWinningMove(state,action,player)){
+            value = TicTacToe_Env.REWARD_WIN;
+        }else{
+            key -= (2-digit(player))*power[action];
+            value = -search(key,opponent,-1,1)*TicTacToe_Env.REWARD_WIN;
+        }
+        state[action]='-'; // undo the trial
+        return value;
+    }
+
+    /**
+     * NegaMax with alpha-beta pruning on the field state attribute. Values are -1 (lost), 0 (draw) and 1 (won)
+     * from the point of view of the player to move.
+     * @param key ternary key of the board (without player)
+     * @param player player to move
+     * @param alpha lower bound of the search window
+     * @param beta upper bound of the search window
+     * @return value of the position for the player to move
+     */
+    private int search(int key, char player, int alpha, int beta)
+    {
+        nodes++;
+        int ttKey = key+digit(player)*power[9];
+        int alphaOrig = alpha;
+        int ttBest = -1;
+        byte flag = ttFlag[ttKey];
+        if (flag!=EMPTY){
+            int v = ttValue[ttKey];
+            if (flag==EXACT) return v;
+            if ((flag==LOWER)&&(v>alpha)) alpha=v;
+            if ((flag==UPPER)&&(v<beta)) beta=v;
+            if (alpha>=beta) return v;
+            ttBest = ttMove[ttKey];
+        }
+
+        char opponent = (player=='o') ? 'x':'o';
+        int best = Integer.MIN_VALUE;
+        int bestMove = -1;
+        for (int i=-1;i<moveOrder.length;i++){
+            int a = (i<0) ? ttBest : moveOrder[i];
+            if ((a<0)||((i>=0)&&(a==ttBest))||(state[a]!='-')) continue;
+            state[a]=player;
+            int value;
+            if (isWinningMove(state,a,player)){
+                value = 1;
+            }else{
+                value = -search(key-(2-digit(player))*power[a],opponent,-beta,-alpha);
+            }
+            state[a]='-';
+            if (value>best){
+                best=value;
+                bestMove=a;
+            }
+            if (best>alpha) alpha=best;
+            if (alpha>=beta) break;
+        }
+        if (bestMove<0) return 0; // If the field is full, the game is over and the return is 0.
+
+        ttValue[ttKey] = (byte)best;
+        ttMove[ttKey] = (byte)bestMove;
+        if (best<=alphaOrig){
+            ttFlag[ttKey] = UPPER;
+        }else if (best>=beta){
+            ttFlag[ttKey] = LOWER;
+        }else{
+            ttFlag[ttKey] = EXACT;
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether the move on field a completes a line of the player.
+     */
+    private static boolean isWinningMove(char[] board, int a, char player)
+    {
+        for (int i=0;i<TicTacToe_Env.winCaseList.length;i++){
+            char[] f = TicTacToe_Env.winCaseList[i];
+            if ((f[0]!=a)&&(f[1]!=a)&&(f[2]!=a)) continue;
+            if ((board[f[0]]==player)&&(board[f[1]]==player)&&(board[f[2]]==player)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Digit of a field in the ternary state key ('x'=0, 'o'=1, '-'=2).
+     */
+    private static int digit(char c)
+    {
+        switch (c) {
+            case 'x': return 0;
+            case 'o': return 1;
+            default : return 2;
+        }
+    }
+
+    /**
+     * Returns the number of positions searched so far.
+     * @return number of searched nodes
+     */
+    public int getNodes()
+    {
+        return nodes;
+    }
+}
@@ -73,13 +73,16 @@ public class TicTacToe_Env extends World
     /**
      * Generates a TicTacToe agent.
      * @param player Symbol of the player
-     * @param ident Name of the algorithm used  ("NegaMax", "Arbitrary", "Human")
+     * @param ident Name of the algorithm used  ("NegaMax", "AlphaBeta NegaMax", "Arbitrary", "Human")
      */
     public TicTacToe_Agent produceAgent(char player, String ident)
     {
         if (ident.equals("NegaMax"))
         {
             return new NegaMax(player,this,ident);
+        } else if (ident.equals("AlphaBeta NegaMax"))
+        {
+            return new AlphaBetaNegaMax(player,this,ident);
         } else if (ident.equals("Arbitrary"))
         {
             return new Arbitrary(player,this,ident);
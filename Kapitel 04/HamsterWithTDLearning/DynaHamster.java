@@ -1,9 +1,5 @@
 import greenfoot.*;  // (World, Actor, GreenfootImage, Greenfoot und MouseInfo)
-import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
  * A hamster agent with "Dyna-Q" algorithm that builds a model supporting model-free learning (Q).
@@ -28,18 +24,19 @@ import java.util.Set;
 public class DynaHamster extends QHamster
 {
     protected final int planningIterations = 5;
-    protected Map <String, HashMap<Integer, Observation>> model; // Modell: S x A -> R x S
+    protected Observation[] model = new Observation[0]; // Modell: S x A -> R x S, index s*SIZE_OF_ACTIONSPACE+a (s: state id)
+    protected int[] modelStates = new int[0];           // states with known transitions
+    protected int numModelStates = 0;
     
     public DynaHamster(){
         super();
         setImage("hamster_gelb.png");
-        model = new HashMap <String, HashMap<Integer, Observation>> ();
     }
         
     @Override
     public void act() 
     {
-        if (s_new==null) {
+        if (s_new<0) {
             s = getState();
         }else{
             s = s_new;
@@ -68,11 +65,11 @@ public class DynaHamster extends QHamster
         s_new = getState();
          
         // get the reward from the environment
-        double r = env.getReward(s_new);
+        double r = env.getReward(getSX(s_new),getSY(s_new));
         sum_reward+=r;
         
         episodeEnd = false;
-        if ((env.isTerminal(s_new))||(cnt_steps>=max_steps)) {   
+        if ((env.isTerminal(getSX(s_new),getSY(s_new)))||(cnt_steps>=max_steps)) {   
            episodeEnd=true;
         }   
         
@@ -99,27 +96,36 @@ public class DynaHamster extends QHamster
      * Simulates an experience by using a random observation in the past.
      */
     public void simulateAnExperience(){
-        String[] s_keys = model.keySet().toArray(new String[0]);
-        String s_sim = s_keys[random.nextInt(s_keys.length)];
-        HashMap <Integer,Observation> knownTransitions = model.get(s_sim);
-        Integer[] actions = (Integer[])knownTransitions.keySet().toArray(new Integer[0]);
-        int a_sim = actions[random.nextInt(actions.length)];
-        Observation b = knownTransitions.get(a_sim);
-        update(s_sim,a_sim,b.getR(),b.getS(),env.isTerminal(b.getS())); // policy update (Q-table)
+        int s_sim = modelStates[random.nextInt(numModelStates)];
+        int base = s_sim*SIZE_OF_ACTIONSPACE;
+        int a_sim = -1;
+        int n = 0;
+        for (int a_i=0;a_i<SIZE_OF_ACTIONSPACE;a_i++){ // random choice among the known actions
+            if ((model[base+a_i]!=null)&&(random.nextInt(++n)==0)) a_sim = a_i;
+        }
+        Observation b = model[base+a_sim];
+        update(s_sim,a_sim,b.getR(),b.getS(),env.isTerminal(getSX(b.getS()),getSY(b.getS()))); // policy update (Q-table)
     }
     
     /**
      * Adds an experience to the model.
-     * @param s state key
+     * @param s state id
      * @param a action
      * @param obs (subsequent state and reward)
      */
-    public void setToModel(String s, Integer a, Observation obs){
-        HashMap <Integer,Observation> value = model.get(s);
-        if (value==null){
-            value = new HashMap <Integer,Observation> ();
-        }
-        value.put(a,obs);
-        model.put(s,value);
+    public void setToModel(int s, int a, Observation obs){
+        int base = s*SIZE_OF_ACTIONSPACE;
+        boolean known = false;
+        for (int a_i=0;a_i<SIZE_OF_ACTIONSPACE;a_i++) known |= (model[base+a_i]!=null);
+        if (!known) modelStates[numModelStates++] = s;
+        model[base+a] = obs;
+    }
+    
+    @Override
+    protected void growStateTables(int capacity)
+    {
+        super.growStateTables(capacity);
+        model = Arrays.copyOf(model,capacity*SIZE_OF_ACTIONSPACE);
+        modelStates = Arrays.copyOf(modelStates,capacity);
     }
 }
\ No newline at end of file
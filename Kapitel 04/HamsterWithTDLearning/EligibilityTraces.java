@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ * Eligibility traces e(s,a) that only keep the active state-action pairs. The pairs are stored in primitive
+ * parallel arrays (state, action, value), an index over the state ids (see StateIndex) finds the entry of a
+ * pair. All traces decay by the same factor in every step, therefore the values are stored relative to a global
+ * scale: decaying all traces only multiplies the scale, e(s,a) = value*scale. Traces that have fallen below the
+ * cutoff EPSILON are removed, so the number of active pairs stays small and does not grow with the explored
+ * area.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class EligibilityTraces
+{
+    private static final double MIN_SCALE = 1e-100; // below this scale the values are renormalized
+
+    private final int actions;
+    private final double epsilon;
+    private final boolean accumulating;
+
+    private int[] entryOf = new int[0]; // index s*actions+a -> entry+1, 0 if the pair has no trace
+    private int[] states = new int[16];
+    private int[] acts = new int[16];
+    private double[] values = new double[16];
+    private int size = 0;
+    private double scale = 1.0;
+
+    /**
+     * Creates an empty set of traces.
+     * @param actions number of actions
+     * @param epsilon cutoff, smaller traces are removed
+     * @param accumulating true: a visit adds 1 to the trace (accumulating traces), false: a visit sets the
+     *                     trace to 1 (replacing traces)
+     */
+    public EligibilityTraces(int actions, double epsilon, boolean accumulating)
+    {
+        this.actions = actions;
+        this.epsilon = epsilon;
+        this.accumulating = accumulating;
+    }
+
+    /**
+     * Enlarges the index for a larger number of states.
+     * @param capacity number of states
+     */
+    public void grow(int capacity)
+    {
+        entryOf = Arrays.copyOf(entryOf,capacity*actions);
+    }
+
+    /**
+     * Marks the visit of a state-action pair: e(s,a) := 1 (replacing) or e(s,a) := e(s,a)+1 (accumulating).
+     * @param s state id
+     * @param a action
+     */
+    public void visit(int s, int a)
+    {
+        int i = entryOf[s*actions+a]-1;
+        if (i<0){
+            if (size==states.length){
+                states = Arrays.copyOf(states,2*size);
+                acts = Arrays.copyOf(acts,2*size);
+                values = Arrays.copyOf(values,2*size);
+            }
+            i = size++;
+            states[i] = s;
+            acts[i] = a;
+            values[i] = 0;
+            entryOf[s*actions+a] = i+1;
+        }
+        values[i] = accumulating ? values[i]+1/scale : 1/scale;
+    }
+
+    /**
+     * Decays all traces, e(s,a) := factor*e(s,a), and removes the traces below the cutoff.
+     * @param factor decay factor (gamma*lambda)
+     */
+    public void decay(double factor)
+    {
+        scale *= factor;
+        if (scale<MIN_SCALE){
+            for (int i=0;i<size;i++) values[i] *= scale;
+            scale = 1.0;
+        }
+        double cutoff = epsilon/scale;
+        for (int i=size-1;i>=0;i--){
+            if (values[i]<cutoff) remove(i);
+        }
+    }
+
+    /**
+     * Removes an entry, the last entry takes its place.
+     */
+    private void remove(int i)
+    {
+        entryOf[states[i]*actions+acts[i]] = 0;
+        int last = --size;
+        if (i!=last){
+            states[i] = states[last];
+            acts[i] = acts[last];
+            values[i] = values[last];
+            entryOf[states[i]*actions+acts[i]] = i+1;
+        }
+    }
+
+    /**
+     * Removes all traces (e.g. at the end of an episode).
+     */
+    public void clear()
+    {
+        for (int i=0;i<size;i++) entryOf[states[i]*actions+acts[i]] = 0;
+        size = 0;
+        scale = 1.0;
+    }
+
+    /**
+     * Gets the trace of a state-action pair.
+     * @param s state id
+     * @param a action
+     * @return e(s,a), 0 if the pair has no active trace
+     */
+    public double get(int s, int a)
+    {
+        int i = entryOf[s*actions+a]-1;
+        return (i<0) ? 0 : values[i]*scale;
+    }
+
+    /**
+     * Returns the number of active traces, they are numbered 0..size()-1 until the next visit or decay.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * State of the i-th active trace.
+     */
+    public int getState(int i)
+    {
+        return states[i];
+    }
+
+    /**
+     * Action of the i-th active trace.
+     */
+    public int getAction(int i)
+    {
+        return acts[i];
+    }
+
+    /**
+     * Value of the i-th active trace.
+     */
+    public double getValue(int i)
+    {
+        return values[i]*scale;
+    }
+}
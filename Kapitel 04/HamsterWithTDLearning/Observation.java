@@ -20,16 +20,16 @@
  */
 public class Observation  
 {
-    private String s;
+    private int s;
     private double r;
 
-    public Observation(String s, double r)
+    public Observation(int s, double r)
     {
         this.s=s;
         this.r=r;
     }
 
-    public String getS(){
+    public int getS(){
         return s;
     }
        
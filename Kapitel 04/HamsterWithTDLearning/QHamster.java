@@ -32,7 +32,7 @@ public class QHamster extends RL_GridWorldAgent
     protected double ETA = 0.1;     // learning rate (step size)
     protected double GAMMA = 0.8; // discount factor
     
-    protected Map <String, Double[]> Q = new HashMap <String, Double[]>(); // Q: S x A -> R
+    protected double[] Q = new double[0]; // Q: S x A -> R, index s*SIZE_OF_ACTIONSPACE+a (s: state id, see StateIndex)
     protected final double minQVal = 0.00001;// Minimum amount for Q(s,a), lower is 0. Should help against side effects due to rounding or truncated decimal places. 
         
     protected int max_steps = 1000;                                // maximum length of one episode
@@ -46,8 +46,8 @@ public class QHamster extends RL_GridWorldAgent
     
     // variables for the algorithm
     protected int a = -1; // current action
-    protected String s = null;     // observed current state
-    protected String s_new = null; // observed next state
+    protected int s = -1;     // observed current state
+    protected int s_new = -1; // observed next state
     protected boolean episodeEnd = false;
     
     public QHamster()
@@ -61,20 +61,20 @@ public class QHamster extends RL_GridWorldAgent
     public void addedToWorld(World world){
         env = (TD_AgentEnv)this.getWorld();
         cnt_steps=1;
-        N_sa.clear();
+        resetN();
         Visitcounter.resetCMax();
         QValueMarker.resetQMaxMin();
     }
     
     /**
      * Stochastic policy of the agent. Assigns a probability distribution to a state over the set of possible actions.
-     * @param s_key state key
+     * @param s state id
      * @return probability distribution for actions a in [0,1,...,n-1].
      */
-    public double[] P_Policy(String s_key)
+    public double[] P_Policy(int s)
     {
-        List <Integer> A_s = env.coursesOfAction(s_key);
-        double[] retP = P_Policy(SIZE_OF_ACTIONSPACE,A_s,s_key);
+        List <Integer> A_s = env.coursesOfAction(getSX(s),getSY(s));
+        double[] retP = P_Policy(SIZE_OF_ACTIONSPACE,A_s,s);
         return retP;
     }
    
@@ -83,14 +83,14 @@ public class QHamster extends RL_GridWorldAgent
      * according to epsilon-greedy action selection strategy.
      * @param n number of sucessor states
      * @param A_s List of action options available to the agent at the given time in s.
-     * @param s_key key for given state s
+     * @param s state id
      * @return probability distribution for actions a in [0,1,...,n-1].
      */
-    public double[] P_Policy(int n, List <Integer> A_s, String s_key )
+    public double[] P_Policy(int n, List <Integer> A_s, int s )
     {
         double[] P = new double[n];
         Arrays.fill(P,0.0);
-        int a_max = getActionWithMaxQ(s_key);
+        int a_max = getActionWithMaxQ(s);
         if (evaluationPhase) {
             // decide only "greedy" in evaluation phase
             P[a_max]=1;
@@ -110,7 +110,7 @@ public class QHamster extends RL_GridWorldAgent
      */
     public void act() 
     {
-        if (s_new==null) {
+        if (s_new<0) {
             s = getState();
         }else{
             s = s_new;
@@ -139,11 +139,11 @@ public class QHamster extends RL_GridWorldAgent
         s_new = getState();
          
         // get the reward from the environment
-        double r = env.getReward(s_new);
+        double r = env.getReward(getSX(s_new),getSY(s_new));
         sum_reward+=r;
         
         episodeEnd = false;
-        if ((env.isTerminal(s_new))||(cnt_steps>=max_steps)) {   
+        if ((env.isTerminal(getSX(s_new),getSY(s_new)))||(cnt_steps>=max_steps)) {   
            episodeEnd=true;
         }
         
@@ -168,24 +168,24 @@ public class QHamster extends RL_GridWorldAgent
     
     /**
      * Update of Q(s,a)  ("Q-learning" approach)
-     * @param s_key state key
+     * @param s state id
      * @param a action
      * @param reward Reward
-     * @param s_key_new Successor state
+     * @param s_new Successor state
      * @param end Has a terminal state or the step limit been reached?
      */
-    protected void update( String s_key, int a, double reward, 
-                                    String s_new_key, boolean end ) 
+    protected void update( int s, int a, double reward, 
+                                    int s_new, boolean end ) 
     { 
         double observation = 0.0;
         if (end) {
             observation = reward; 
         } else {
-            observation = reward + (GAMMA * maxQ(s_new_key));    
+            observation = reward + (GAMMA * maxQ(s_new));    
         }   
-        double q = getQ(s_key, a); 
+        double q = getQ(s, a); 
         q = q + ETA*(observation - q); 
-        setQ(s_key,a, q); 
+        setQ(s,a, q); 
     }
     
     /**
@@ -212,109 +212,111 @@ public class QHamster extends RL_GridWorldAgent
     }
     
     @Override
-    public String getState(){
-        return getStateKey(getX(),getY(),getGrainsInJaws());
+    public int getState(){
+        return getStateId(getX(),getY(),getGrainsInJaws());
     }
     
+    @Override
+    protected void growStateTables(int capacity)
+    {
+        super.growStateTables(capacity);
+        Q = Arrays.copyOf(Q,capacity*SIZE_OF_ACTIONSPACE); // new states have Q-values 0
+    }
+    
+    /**
+     * String view of a state for display and export.
+     * @param s state id
+     * @return state key "[x,y,score]"
+     */
+    public String getStateKey(int s) 
+    { 
+        return states.key(s);
+    } 
+    
     /**
-     * Creates the key for accessing the table of Q. If it does not exist, the corresponding record is created.
+     * Finds the id of a state without creating it, e.g. for the display.
      * @param x column in the gridworld
      * @param y row in the gridworld
      * @param score collected grains
-     * @return state key
+     * @return state id, -1 if the state has not been observed yet
      */
-    public String getStateKey(int x, int y, int score) 
-    { 
-        String key="["+x+","+y+","+score+"]";   
-        if (!Q.containsKey(key)) {
-            Double[] vals = new Double[SIZE_OF_ACTIONSPACE];
-            Arrays.fill(vals,0.0); 
-            Q.put(key,vals);
-        }
-        return key;
-    } 
+    public int findState(int x, int y, int score)
+    {
+        return states.find(x,y,score);
+    }
     
     /**
      * Gets the action with the largest Q value for a given state. If there are several Q_max actions
-     * with the same value, they are selected randomly. If there are no Q-values, then -1 is returned.
-     * @param s_key state key
-     * @return Action with greatest Q-value stored for the state s. Null if state is unknown.
+     * with the same value, one of them is selected randomly.
+     * @param s state id
+     * @return Action with greatest Q-value stored for the state s.
      */
-    protected Integer getActionWithMaxQ(String s_key) 
+    protected int getActionWithMaxQ(int s) 
     { 
+        int base = s*SIZE_OF_ACTIONSPACE;
         double maxQ = Double.NEGATIVE_INFINITY; 
-        LinkedList <Integer> A_max = new LinkedList <Integer> (); 
-        Double[] vals = Q.get(s_key); 
-        if (vals!=null) {
-            for(int a=0;a<vals.length;a++) {
-                Double v=vals[a];
-                if(v>maxQ) { 
-                    maxQ = v; 
-                    A_max.clear();
-                    A_max.add(a);
-                }
-                if (v==maxQ) A_max.add(a); // include in the list of the best actions
-            } 
-         
-        }
-        if (A_max.isEmpty()) {
-            return -1;
-        }else{
-            return A_max.get(random.nextInt(A_max.size())); // For not choosing always the same action, if there is more then one action with the same value.
+        int a_max = -1;
+        int n_max = 0;
+        for(int a=0;a<SIZE_OF_ACTIONSPACE;a++) {
+            double v=Q[base+a];
+            if(v>maxQ) { 
+                maxQ = v; 
+                a_max = a;
+                n_max = 1;
+            }else if (v==maxQ){
+                n_max++;
+                if (random.nextInt(n_max)==0) a_max = a; // For not choosing always the same action, if there is more then one action with the same value.
+            }
         }
+        return a_max;
     }
         
     /**
      * Gets the greatest Q-value stored for the state s.
-     * @param s_key state key
-     * @return greatest Q-value stored for the state s. Null if state is unknown.
+     * @param s state id
+     * @return greatest Q-value stored for the state s.
      */
-    public Double maxQ(String s_key) 
+    public double maxQ(int s) 
     { 
-        double maxQ = Double.NEGATIVE_INFINITY; 
-        Double[] vals = Q.get(s_key); 
-        if (vals!=null) {
-            for(Double v : vals) { 
-                if(v>maxQ) { 
-                    maxQ = v; 
-                }
-            } 
-            return maxQ;
-        }else{
-            return null;
-        }
+        int base = s*SIZE_OF_ACTIONSPACE;
+        double maxQ = Q[base]; 
+        for(int a=1;a<SIZE_OF_ACTIONSPACE;a++) { 
+            if(Q[base+a]>maxQ) maxQ = Q[base+a]; 
+        } 
+        return maxQ;
     }  
     
     /**
      * Sets a Q-value for the state-action pair (s,a).
-     * @param s state key
+     * @param s state id
+     * @param a action
      * @param v Q-value of the state-action pair (s,a) to be set.
      */
-    protected void setQ(String s_key, int a, double v) 
+    protected void setQ(int s, int a, double v) 
     {
         if (Math.abs(v)<minQVal) v=0.0;
-        Q.get(s_key)[a]=v; 
+        Q[s*SIZE_OF_ACTIONSPACE+a]=v; 
     } 
  
     /**
      * Gets the Q-value for the state-action pair (s,a).
-     * @param s_key state key
+     * @param s state id
      * @param a action
      * @return Q-value
      */
-    protected double getQ(String s_key, int a) 
+    protected double getQ(int s, int a) 
     {
-        return Q.get(s_key)[a]; 
+        return Q[s*SIZE_OF_ACTIONSPACE+a]; 
     } 
     
     /**
      * Gets all Q-Values at given state s.
-     * @param s_key state key
+     * @param s state id
      * @return Array with the Q action values.
      */
-    public Double[] getQValues(String s_key)
+    public double[] getQValues(int s)
     {
-        return Q.get(s_key);
+        return Arrays.copyOfRange(Q,s*SIZE_OF_ACTIONSPACE,(s+1)*SIZE_OF_ACTIONSPACE);
     }
     
-}
\ No newline at end of file
+}
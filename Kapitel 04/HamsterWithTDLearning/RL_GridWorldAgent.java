@@ -2,7 +2,6 @@ import greenfoot.*;  // (World, Actor, GreenfootImage, Greenfoot und MouseInfo)
 import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Arrays;
 
 /**
@@ -49,8 +48,11 @@ public abstract class RL_GridWorldAgent extends Hamster
     
     protected int SIZE_OF_ACTIONSPACE = 4;
     
-    protected HashMap <String, Integer> N = new HashMap <String, Integer>(); // counter at state s, N(s),  for visit statistics
-    protected HashMap <String, int[]> N_sa = new HashMap <String, int[]>(); // counter at state s, N(s,a), for visit statistics
+    protected StateIndex states = new StateIndex(); // dense ids of the observed states (x,y,score)
+    protected int stateCapacity = 0;                // number of states for which the tables indexed by state id have space
+    
+    protected int[] N = new int[0];    // counter at state s, N(s),  for visit statistics
+    protected int[] N_sa = new int[0]; // counter at state s, N(s,a), for visit statistics (index s*SIZE_OF_ACTIONSPACE+a)
     
     // counters
     protected int cnt_steps = 0;    // Number of moves within an episode
@@ -62,10 +64,10 @@ public abstract class RL_GridWorldAgent extends Hamster
     /**
      * Stochastic policy of the agent. Assigns a probability distribution to a state over the set of 
      * possible actions.
-     * @param s_key Key for given world state s.
+     * @param s state id
      * @return Probability distribution over action set related to the state.
      */
-    public double[] P_Policy(String s_key ){
+    public double[] P_Policy(int s ){
         double[] P = new double[SIZE_OF_ACTIONSPACE]; 
         int a_max = random.nextInt();  // move randomly
         P[a_max]=1;
@@ -139,73 +141,111 @@ public abstract class RL_GridWorldAgent extends Hamster
     
     /**
      * Observes the current state from the environment.
+     * @return state id
+     */
+    public abstract int getState();
+    
+    /**
+     * Returns the id of a state (x,y,score). If the state is observed for the first time, it gets a new id and
+     * the tables indexed by state id are enlarged if necessary.
+     * @param x column in the gridworld
+     * @param y row in the gridworld
+     * @param score collected grains
+     * @return state id
+     */
+    protected int getStateId(int x, int y, int score)
+    {
+        int s = states.id(x,y,score);
+        if (s>=stateCapacity){
+            stateCapacity = Math.max(64,2*stateCapacity);
+            growStateTables(stateCapacity);
+        }
+        return s;
+    }
+    
+    /**
+     * Enlarges the tables that are indexed by state id (new entries are 0). Subclasses with further tables
+     * override this method and call it.
+     * @param capacity new number of states
+     */
+    protected void growStateTables(int capacity)
+    {
+        N = Arrays.copyOf(N,capacity);
+        N_sa = Arrays.copyOf(N_sa,capacity*SIZE_OF_ACTIONSPACE);
+    }
+    
+    /**
+     * Resets the visit counters.
      */
-    public abstract String getState();
+    protected void resetN()
+    {
+        Arrays.fill(N,0);
+        Arrays.fill(N_sa,0);
+    }
     
     /**
      * Gets the counter status at the state s.
-     * @param s state key
+     * @param s state id
      * @return counter status at state s.
      */
-    protected int getN(String s_key)
+    protected int getN(int s)
     { 
-        Integer c = N.get(s_key);
-        if (c==null) return 0;
-        return c;
+        return N[s];
     }
          
     /**
      * Increases counter at state s. N(s) := N(s)+1
-     * @param s state key
+     * @param s state id
      * @return new counter status at state s.
      */
-    protected int incN(String s)
+    protected int incN(int s)
     {
-        Integer c = N.get(s);
-        if (c==null){
-            c=1;
-        }else{
-            c++;
-        }
-        N.put(s,c);
-        return c;
+        return ++N[s];
     }
     
     /**
      * Gets the counter status at the state-action pair (s,a).
-     * @param s state key
+     * @param s state id
      * @param a action
      * @return counter status at the state-action pair (s,a).
      */
-    protected int getN(String s_key, int a)
+    protected int getN(int s, int a)
     { 
-        int[] ns = N_sa.get(s_key);
-        if (ns==null) return 0;
-        return ns[a];
+        return N_sa[s*SIZE_OF_ACTIONSPACE+a];
     }
          
     /**
      * Increases counter at state-action pair (s,a). N(s,a) := N(s,a)+1
-     * @param s state key
+     * @param s state id
      * @param a action
      * @return new counter status at state s.
      */
-    protected int incN(String s_key, int a)
+    protected int incN(int s, int a)
     {
-        int[] ns = N_sa.get(s_key);
-        if (ns==null) {
-            ns = new int[SIZE_OF_ACTIONSPACE];
-            Arrays.fill(ns,0);
-            ns[a]=1;
-        }else{
-            ns[a]++;
-        }
-        N_sa.put(s_key,ns);
-        return ns[a];
+        return ++N_sa[s*SIZE_OF_ACTIONSPACE+a];
+    }
+    
+    /**
+     * Gets the X-component of a state, the column of the agent position in the grid.
+     * @param s state id
+     * @return x-component (column) of the agent position in the grid.
+     */
+    public int getSX(int s){
+        return states.getX(s);
+    }
+    
+    /**
+     * Gets the Y-component of a state, the row of the agent position in the grid.
+     * @param s state id
+     * @return y-component (row) of the agent position in the grid.
+     */
+    public int getSY(int s){
+        return states.getY(s);
     }
     
+
     /**
-     * Gets the X-component as an integer value from the state key, which describes
+     * Gets the X-component as an integer value from the state key (String view), which describes
      * the position of the agent within the grid.
      * @param s_key state key
      * @return x-component (column) of the agent position in the grid.
@@ -216,7 +256,7 @@ public abstract class RL_GridWorldAgent extends Hamster
     }
     
     /**
-     * Gets the Y-component as an integer value from the state key, which describes
+     * Gets the Y-component as an integer value from the state key (String view), which describes
      * the position of the agent within the grid.
      * @param s_key state key
      * @return y-component (row) of the agent position in the grid.
@@ -32,7 +32,7 @@ public class SarsaHamster extends QHamster
      */
     public void act() 
     {
-        if (s_new==null) {
+        if (s_new<0) {
             s = getState();
             double[] P = P_Policy(s); 
             a = selectAccordingToDistribution(P);
@@ -61,11 +61,11 @@ public class SarsaHamster extends QHamster
         int a_new = selectAccordingToDistribution(P);
         
         // get the reward from the environment
-        double r = env.getReward(s_new);
+        double r = env.getReward(getSX(s_new),getSY(s_new));
         sum_reward+=r;
         
         episodeEnd = false;
-        if ((env.isTerminal(s_new))||(cnt_steps>=max_steps)) {   
+        if ((env.isTerminal(getSX(s_new),getSY(s_new)))||(cnt_steps>=max_steps)) {   
            episodeEnd=true;
         }
         
@@ -78,29 +78,29 @@ public class SarsaHamster extends QHamster
         // episode end reached?
         if (episodeEnd) {   
            startNewEpisode();
-           s_new=null;
+           s_new=-1;
         }
     } 
     
     /**
      * Update of Q(s,a)  ("Sarsa learning")
-     * @param s_key state key
+     * @param s state id
      * @param a action
      * @param reward Reward
-     * @param s_key_new Successor state
+     * @param s_new Successor state
      * @param a_new Successor state
      * @param end Has a terminal state or the step limit been reached?
      */
-    protected void update( String s_key, int a, double reward, String s_new_key, int a_new, boolean end ) 
+    protected void update( int s, int a, double reward, int s_new, int a_new, boolean end ) 
     { 
         double observation = 0.0;
         if (end) {
             observation = reward; 
         } else {
-            observation = reward + (GAMMA * getQ(s_new_key,a_new));    
+            observation = reward + (GAMMA * getQ(s_new,a_new));    
         }   
-        double q = getQ(s_key, a); 
+        double q = getQ(s, a); 
         q = q + ETA * (observation - q); 
-        setQ(s_key,a, q); 
+        setQ(s,a, q); 
     }
 }
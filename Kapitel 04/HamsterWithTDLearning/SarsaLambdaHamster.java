@@ -25,17 +25,18 @@ import java.util.*;
  */
 public class SarsaLambdaHamster extends SarsaHamster
 {
-    protected Map <String, HashMap<Integer, Double>> e;
     protected final double LAMBDA = 0.9 ;
+    protected final double TRACE_CUTOFF = 0.0001;        // smaller eligibility values are dropped
+    protected final boolean ACCUMULATING_TRACES = false; // true: accumulating traces, false: replacing traces
+    protected EligibilityTraces e = new EligibilityTraces(SIZE_OF_ACTIONSPACE,TRACE_CUTOFF,ACCUMULATING_TRACES); // only the active pairs
        
     public SarsaLambdaHamster(){
         super();
-        e = new HashMap <String, HashMap<Integer, Double>>();
         setImage("hamster_hellgruen.png");
     }
 
     @Override
-    protected void update( String s, int a, double reward, String s_new, int a_new, boolean episodeEnd ) 
+    protected void update( int s, int a, double reward, int s_new, int a_new, boolean episodeEnd ) 
     {
         double observation = 0.0;
         if (episodeEnd) {
@@ -44,21 +45,15 @@ public class SarsaLambdaHamster extends SarsaHamster
             observation = reward + (GAMMA * getQ(s_new,a_new));    
         }   
         double TD_error = observation - getQ(s,a); 
-        setE(s,a,1);
-        for(Map.Entry <String, HashMap<Integer, Double>> eItem : e.entrySet()){
-            String keyS = (String)(eItem.getKey());
-            HashMap <Integer, Double> values = eItem.getValue();
-            for (HashMap.Entry <Integer,Double> valItem : values.entrySet()){
-                Integer a_e = valItem.getKey();
-                Double e = valItem.getValue(); // eligibility value
-                if (e>0) {
-                    double q_old = getQ(keyS,a_e);
-                    double q_new = q_old + ETA * TD_error * e;
-                    setQ(keyS, a_e, q_new); 
-                    setE(keyS, a_e, GAMMA*LAMBDA*e); // decrease of the eligibility value
-                }
-            }
+        e.visit(s,a);
+        for(int i=0;i<e.size();i++){
+            int keyS = e.getState(i);
+            int a_e = e.getAction(i);
+            double q_old = getQ(keyS,a_e);
+            double q_new = q_old + ETA * TD_error * e.getValue(i);
+            setQ(keyS, a_e, q_new); 
         }
+        e.decay(GAMMA*LAMBDA); // decrease of all eligibility values
     }
     
     protected void startNewEpisode()
@@ -83,48 +78,24 @@ public class SarsaLambdaHamster extends SarsaHamster
         setLocation(env.getHamsterStartX(),env.getHamsterStartY());
     }
     
-    /**
-     * Sets a eligibility value to a state action pair.
-     * @param s state key
-     * @param a action
-     * @param eligibility value    
-     */
-    protected void setE(String s, int a, double v) 
-    {    
-        HashMap <Integer, Double> eav = e.get(s);
-        if (eav==null){
-            eav = new HashMap <Integer, Double> ();
-        }
-        eav.put(a,v);
-        e.put(s,eav);
-    } 
+    @Override
+    protected void growStateTables(int capacity)
+    {
+        super.growStateTables(capacity);
+        e.grow(capacity);
+    }
  
     /**
      * Gets a eligibility value of a state action pair.
-     * @param s state key
+     * @param s state id
      * @param a action
      * @param eligibility value  
      */
-    public double getE(String s, int a) 
+    public double getE(int s, int a) 
     {
-        HashMap <Integer, Double> values = e.get(s);
-        if (values==null) return 0;
-        Double ev = values.get(a);
-        if (ev==null) return 0;
-        return ev; 
+        return e.get(s,a); 
     }  
     
-    /**
-     * Gets a list of all eligibility values of a state.
-     * @param s state key
-     * @param a action
-     * @param eligibility value  
-     */
-    public HashMap <Integer, Double> getEValues(String s)
-    {
-        return e.get(s);
-    }
-    
     @Override
     protected void updateDisplay(){
         if (this.evaluationPhase) env.putTracemarker(getSX(s),getSY(s),a,1.0);
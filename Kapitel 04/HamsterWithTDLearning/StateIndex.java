@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+/**
+ * Assigns dense ids 0,1,2,... to the states (x,y,score) of the hamster in the order in which they are observed.
+ * With these ids the tables of the agents (Q-values, counters, eligibility traces, model) are plain primitive
+ * arrays, a state is found by open addressing without building or hashing a String. The String key "[x,y,score]"
+ * is only created for the display and the export (key).
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class StateIndex
+{
+    private int[] slots = new int[64]; // hash table: id+1 of a state, 0 if the slot is empty
+    private int[] xs = new int[32];    // id -> x
+    private int[] ys = new int[32];    // id -> y
+    private int[] scores = new int[32]; // id -> score
+    private int size = 0;
+
+    /**
+     * Returns the id of a state, a new id is assigned to a state observed for the first time.
+     * @param x column in the gridworld
+     * @param y row in the gridworld
+     * @param score collected grains
+     * @return state id
+     */
+    public int id(int x, int y, int score)
+    {
+        int i = slot(x,y,score);
+        if (slots[i]!=0) return slots[i]-1;
+        if (size==xs.length){
+            xs = Arrays.copyOf(xs,2*size);
+            ys = Arrays.copyOf(ys,2*size);
+            scores = Arrays.copyOf(scores,2*size);
+        }
+        int s = size++;
+        xs[s] = x;
+        ys[s] = y;
+        scores[s] = score;
+        slots[i] = s+1;
+        if (2*size>slots.length) rehash();
+        return s;
+    }
+
+    /**
+     * Returns the id of a state without assigning a new one.
+     * @param x column in the gridworld
+     * @param y row in the gridworld
+     * @param score collected grains
+     * @return state id, -1 if the state has not been observed yet
+     */
+    public int find(int x, int y, int score)
+    {
+        return slots[slot(x,y,score)]-1;
+    }
+
+    /**
+     * Slot of a state in the hash table, or the empty slot where it belongs (linear probing).
+     */
+    private int slot(int x, int y, int score)
+    {
+        int mask = slots.length-1;
+        int i = hash(x,y,score)&mask;
+        while (slots[i]!=0){
+            int s = slots[i]-1;
+            if ((xs[s]==x)&&(ys[s]==y)&&(scores[s]==score)) break;
+            i = (i+1)&mask;
+        }
+        return i;
+    }
+
+    private static int hash(int x, int y, int score)
+    {
+        int h = (x*31+y)*31+score;
+        h *= 0x9E3779B9;
+        return h^(h>>>16);
+    }
+
+    private void rehash()
+    {
+        slots = new int[2*slots.length];
+        for (int s=0;s<size;s++) slots[slot(xs[s],ys[s],scores[s])] = s+1;
+    }
+
+    public int getX(int s)
+    {
+        return xs[s];
+    }
+
+    public int getY(int s)
+    {
+        return ys[s];
+    }
+
+    public int getScore(int s)
+    {
+        return scores[s];
+    }
+
+    /**
+     * Returns the number of states observed so far.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * String view of a state (for display and export).
+     * @param s state id
+     * @return state key "[x,y,score]"
+     */
+    public String key(int s)
+    {
+        return "["+xs[s]+","+ys[s]+","+scores[s]+"]";
+    }
+}
@@ -1,6 +1,5 @@
 import greenfoot.*;  // (World, Actor, GreenfootImage, Greenfoot and MouseInfo)
 import java.util.List;
-import java.util.HashMap;
 
 /**
  * An environment for "online" learning hamster agents that evaluate TD error for state assessment.
@@ -154,9 +153,9 @@ public class TD_AgentEnv extends RL_GridEnv
     */
     public void updateValue(QHamster qHamster, int x, int y)
     {
-        String s_key="["+x+","+y+","+qHamster.getGrainsInJaws()+"]";    
-        Double val = qHamster.maxQ(s_key);
-        if (val!=null) {
+        int s = qHamster.findState(x,y,qHamster.getGrainsInJaws());
+        if (s>=0) {
+            double val = qHamster.maxQ(s);
             List <Value> valueObjects = this.getObjectsAt(x,y,Value.class);
             Value v = null;
             if ( valueObjects.size()>0 ) {
@@ -178,7 +177,7 @@ public class TD_AgentEnv extends RL_GridEnv
     public void updateCounter(QHamster qHamster, int x, int y)
     {
         if (!this.isStatePossible(x,y)) return;
-        String s_key="["+x+","+y+","+qHamster.getGrainsInJaws()+"]";    
+        int s = qHamster.findState(x,y,qHamster.getGrainsInJaws());
         List <Visitcounter> cObjects = this.getObjectsAt(x,y,Visitcounter.class);
         Visitcounter co = null;
         if ( cObjects.size()>0 ) {
@@ -187,7 +186,7 @@ public class TD_AgentEnv extends RL_GridEnv
             co = new Visitcounter(0);
             super.addObject(co,x,y);
         }
-        Integer c = qHamster.getN(s_key);
+        int c = (s>=0) ? qHamster.getN(s) : 0;
         co.setC(c);
     }
     
@@ -200,11 +199,11 @@ public class TD_AgentEnv extends RL_GridEnv
     public void updateQMarker(QHamster qHamster, int x, int y)
     {
          if (!this.isStatePossible(x,y)||isTerminal(x,y)) return;
-         String s_key="["+x+","+y+","+qHamster.getGrainsInJaws()+"]";    
-         Double[] qValues = qHamster.getQValues(s_key);
-         if (qValues!=null){
+         int s = qHamster.findState(x,y,qHamster.getGrainsInJaws());
+         if (s>=0){
+             double[] qValues = qHamster.getQValues(s);
              for (int a=0;a<qValues.length;a++){
-                 Double qv=qValues[a];
+                 double qv=qValues[a];
                  List <QValueMarker> qValueMarkerObjects = this.getObjectsAt(x,y,QValueMarker.class);
                  boolean update = false;
                  for (QValueMarker qvm : qValueMarkerObjects){
@@ -234,12 +233,11 @@ public class TD_AgentEnv extends RL_GridEnv
     {
         if (!this.isStatePossible(x,y)||isTerminal(x,y)) return;
         
-        String s_key="["+x+","+y+","+sarsaLambdaHamster.getGrainsInJaws()+"]";    
-        HashMap <Integer, Double> eValues = sarsaLambdaHamster.getEValues(s_key);
-        if (eValues!=null) {
-            for (HashMap.Entry <Integer,Double> valItem : eValues.entrySet()) {
-                Integer a = valItem.getKey();
-                Double ev = valItem.getValue(); // Eignungswert
+        int s = sarsaLambdaHamster.findState(x,y,sarsaLambdaHamster.getGrainsInJaws());
+        if (s>=0) {
+            for (int a=0;a<sarsaLambdaHamster.SIZE_OF_ACTIONSPACE;a++) {
+                double ev = sarsaLambdaHamster.getE(s,a); // Eignungswert
+                if (ev<=0) continue; // no trace
                 List <Policymarker> objects = getObjectsAt(x,y,Policymarker.class);
                 boolean update = false;
                 for (Policymarker tm : objects) {
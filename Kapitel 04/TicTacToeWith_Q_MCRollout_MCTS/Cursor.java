@@ -25,6 +25,8 @@ public class Cursor extends Actor
     public Cursor()
     {
         GreenfootImage image = new GreenfootImage("auswahl.png");
+        int size = TicTacToe_Env.cellSize();
+        if (image.getWidth()!=size) image.scale(size,size);
         setImage(makeWhiteTransparent(image));
     }
     
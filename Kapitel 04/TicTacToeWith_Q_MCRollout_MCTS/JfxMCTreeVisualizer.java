@@ -1,8 +1,7 @@
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
-import javafx.geometry.Pos;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
@@ -11,20 +10,35 @@ import javafx.scene.control.TreeView;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.Tab;
+import javafx.scene.layout.BorderPane;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import java.text.SimpleDateFormat;
 import java.sql.Timestamp;
 import javafx.scene.layout.StackPane;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Tool for displaying monte-carlo trees.
- * 
+ *
+ * The tree is shown while the search is running: after each backpropagation the search sends the statistics of
+ * the path (pathUpdated) as a delta through a bounded queue, if the queue is full the delta is dropped, so the
+ * search is never blocked. The JavaFX thread takes the deltas in each frame into a mirror of the upper levels of
+ * the tree and redraws at most every REDRAW_INTERVAL milliseconds. Only the top-k most visited children of each
+ * node are rendered down to a configurable depth (level of detail), the tree items and board icons are reused,
+ * so the effort of the display does not depend on the size of the tree.
+ *
  * Supplementary material to the Springer book
- * 'Reinforcement Learning from scratch - Understanding current approaches with Java and Greenfoot' 
+ * 'Reinforcement Learning from scratch - Understanding current approaches with Java and Greenfoot'
  * Uwe Lorenz
- * 
+ *
  * https://www.facebook.com/ReinforcementLearningJava
  *
  * license: CC BY-SA 4.0 (Attribution-ShareAlike)
@@ -33,72 +47,301 @@ import java.util.ArrayList;
  * @version 0.9 (nicht finalisiert)
  */
 public class JfxMCTreeVisualizer{
-    private TreeView <MCT_Node> treeView;
+    public static int QUEUE_CAPACITY = 4096;  // deltas waiting for the JavaFX thread
+    public static long REDRAW_INTERVAL = 250; // minimal time between two redraws in ms
+    public static int TOP_K = 4;              // rendered children per node (the most visited ones)
+    public static int MAX_DEPTH = 4;          // rendered levels below the root
+
+    private TreeView <String> treeView;
+    private Label lbStatus;
     private TextArea taTextLog;
     private static final String styleSheet = "resources/logchart.css";
     private static final SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy HH.mm.ss,SSS");
-   
+
+    // handed over from the search threads
+    private final ArrayBlockingQueue<Delta> deltas = new ArrayBlockingQueue<Delta>(QUEUE_CAPACITY);
+    private final AtomicReference<Delta> newRoot = new AtomicReference<Delta>();
+    private final AtomicInteger queued = new AtomicInteger(); // deltas in the queue, checked before a delta is built
+    private final LongAdder dropped = new LongAdder();
+    private volatile int epoch = 0;
+    private volatile int topK = TOP_K;
+    private volatile int maxDepth = MAX_DEPTH;
+    private volatile boolean closed = false;
+
+    // mirror of the upper levels of the tree, only accessed by the JavaFX thread
+    private final IdentityHashMap<MCT_Node,Entry> entries = new IdentityHashMap<MCT_Node,Entry>();
+    private Entry root = null;
+    private int rootEpoch = -1;
+    private boolean dirty = false;
+    private long lastRedraw = 0;
+
+    /**
+     * Statistics of a path from the root (nodes[0]) downwards, or a new root (rootState!=null).
+     */
+    private static final class Delta
+    {
+        final int epoch;
+        final MCT_Node[] nodes;
+        final int[] actions;
+        final char[] players;
+        final int[] visits;
+        final double[] scores;
+        final char[] rootState;
+
+        Delta(int epoch, int n, char[] rootState)
+        {
+            this.epoch = epoch;
+            nodes = new MCT_Node[n];
+            actions = new int[n];
+            players = new char[n];
+            visits = new int[n];
+            scores = new double[n];
+            this.rootState = rootState;
+        }
+
+        void set(int i, MCT_Node node)
+        {
+            nodes[i] = node;
+            actions[i] = node.getActionFromFather();
+            players[i] = node.getPlayer();
+            visits[i] = node.getVisits();
+            scores[i] = node.getScore();
+        }
+    }
+
+    /**
+     * Node of the mirror with the last known statistics and its tree item.
+     */
+    private static final class Entry
+    {
+        final Entry father;
+        final int action;
+        final char player;
+        final List<Entry> children = new ArrayList<Entry>();
+        int visits;
+        double score;
+        char[] state;
+        TreeItem<String> item;
+
+        Entry(Entry father, int action, char player)
+        {
+            this.father = father;
+            this.action = action;
+            this.player = player;
+        }
+    }
+
     public JfxMCTreeVisualizer(MC_Tree mct, String diagrammTitel) {
         Platform.runLater(()->{
             Stage stage = new Stage();
             stage.setTitle(diagrammTitel);
-            
+
             Tab tabVisualization = new Tab("Baum");
             Tab tabTextLog = new Tab("Infos");
-             
+
             TabPane loggerTabs = new TabPane();
             loggerTabs.getTabs().add(tabVisualization);
             loggerTabs.getTabs().add(tabTextLog);
-            
+
             taTextLog = new TextArea();
             tabTextLog.setContent(taTextLog);
-            
-            // mct root
-            treeView = erstelleVisualization(mct.getRoot());
-         
-            StackPane sTreeViewPane = new StackPane();
+
+            treeView = new TreeView<String>();
+            lbStatus = new Label();
+
+            BorderPane sTreeViewPane = new BorderPane();
             sTreeViewPane.setPadding(new Insets(5));
-            sTreeViewPane.getChildren().add(treeView);
-           
+            sTreeViewPane.setTop(lbStatus);
+            sTreeViewPane.setCenter(treeView);
+
             tabVisualization.setContent( sTreeViewPane );
 
             Scene scene  = new Scene(loggerTabs,800,600);
             scene.getStylesheets().add(styleSheet);
             stage.setScene(scene);
+
+            AnimationTimer timer = new AnimationTimer(){
+                @Override
+                public void handle(long now)
+                {
+                    drain();
+                }
+            };
+            stage.setOnHidden(e->{
+                closed = true;
+                timer.stop();
+            });
             stage.show();
+            timer.start();
         });
+        if (mct!=null) updateVisualisation(mct);
     }
-    
+
+    /**
+     * Shows a (new) tree: the root and the top-k branches of the current statistics.
+     * @param mct Monte-Carlo tree
+     */
     public void updateVisualisation(MC_Tree mct){
-        Platform.runLater(()->{
-            treeView = erstelleVisualization(mct.getRoot());
-        });
+        setRoot(mct.getRoot());
+        sendSubtree(mct.getRoot(),0);
+    }
+
+    /**
+     * Changes the level of detail.
+     * @param topK rendered children per node
+     * @param maxDepth rendered levels below the root
+     */
+    public void setLevelOfDetail(int topK, int maxDepth){
+        this.topK = Math.max(1,topK);
+        this.maxDepth = Math.max(0,maxDepth);
+    }
+
+    /**
+     * Sets the root of the displayed tree (e.g. at the start of a move). Deltas of the former tree are ignored.
+     * @param rootNode new root
+     */
+    public void setRoot(MCT_Node rootNode){
+        Delta d = new Delta(++epoch,1,rootNode.getState().clone());
+        d.set(0,rootNode);
+        newRoot.set(d);
+    }
+
+    /**
+     * Called by the search after the backpropagation: sends the statistics of the path from the root to the
+     * node, as far as it is rendered. Never blocks, if the queue is full the delta is dropped (the next delta of
+     * a node contains its complete statistics again).
+     * @param node node from which the backpropagation started
+     */
+    public void pathUpdated(MCT_Node node){
+        if (closed) return;
+        if (queued.get()>=QUEUE_CAPACITY){
+            dropped.increment();
+            return;
+        }
+        int depth = 0;
+        for (MCT_Node n=node; n.getFather()!=null; n=n.getFather()) depth++;
+        int levels = maxDepth; // deeper nodes are not rendered
+        while (depth>levels){
+            node = node.getFather();
+            depth--;
+        }
+        Delta d = new Delta(epoch,depth+1,null);
+        for (int i=depth;i>=0;i--){
+            d.set(i,node);
+            node = node.getFather();
+        }
+        if (deltas.offer(d)){
+            queued.incrementAndGet();
+        }else{
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Sends the paths to the top-k children of a node, recursively down to the rendered depth.
+     */
+    private void sendSubtree(MCT_Node node, int depth){
+        if (depth>=maxDepth) return;
+        ArrayList<MCT_Node> children = node.getChildren();
+        children.sort(Comparator.comparingInt(MCT_Node::getVisits).reversed());
+        for (int i=0;i<Math.min(topK,children.size());i++){
+            pathUpdated(children.get(i));
+            sendSubtree(children.get(i),depth+1);
+        }
+    }
+
+    /**
+     * JavaFX thread, once per frame: takes over the deltas and redraws, if the last redraw is long enough ago.
+     */
+    private void drain(){
+        Delta r = newRoot.getAndSet(null);
+        if (r!=null){
+            entries.clear();
+            root = new Entry(null,-1,r.players[0]);
+            root.state = r.rootState;
+            root.visits = r.visits[0];
+            root.score = r.scores[0];
+            entries.put(r.nodes[0],root);
+            rootEpoch = r.epoch;
+            treeView.setRoot(item(root));
+            dirty = true;
+        }
+        for (Delta d=deltas.poll(); d!=null; d=deltas.poll()){
+            queued.decrementAndGet();
+            merge(d);
+        }
+        long now = System.currentTimeMillis();
+        if (dirty && (root!=null) && (now-lastRedraw>=REDRAW_INTERVAL)){
+            render(root,0);
+            lbStatus.setText("mirrored nodes: "+entries.size()+"   dropped deltas: "+dropped.sum()
+                             +"   top-k: "+topK+"   depth: "+maxDepth);
+            lastRedraw = now;
+            dirty = false;
+        }
+    }
+
+    private void merge(Delta d){
+        if ((root==null)||(d.epoch!=rootEpoch)||(entries.get(d.nodes[0])!=root)) return;
+        Entry e = root;
+        for (int i=0;i<d.nodes.length;i++){
+            if (i>0){
+                Entry child = entries.get(d.nodes[i]);
+                if ((child==null)||(child.father!=e)){
+                    child = new Entry(e,d.actions[i],d.players[i]);
+                    entries.put(d.nodes[i],child);
+                    e.children.add(child);
+                }
+                e = child;
+            }
+            e.visits = d.visits[i];
+            e.score = d.scores[i];
+        }
+        dirty = true;
+    }
+
+    /**
+     * Updates the tree item of an entry and shows its top-k children.
+     */
+    private void render(Entry e, int depth){
+        TreeItem<String> ti = item(e);
+        ti.setValue(label(e));
+        List<TreeItem<String>> shown = new ArrayList<TreeItem<String>>();
+        if (depth<maxDepth){
+            List<Entry> children = new ArrayList<Entry>(e.children);
+            children.sort((a,b)->Integer.compare(b.visits,a.visits));
+            for (int i=0;i<Math.min(topK,children.size());i++){
+                render(children.get(i),depth+1);
+                shown.add(children.get(i).item);
+            }
+        }
+        if (!shown.equals(ti.getChildren())) ti.getChildren().setAll(shown);
+    }
+
+    private TreeItem<String> item(Entry e){
+        if (e.item==null) e.item = new TreeItem<String>(label(e),produziereNodeIcon(state(e)));
+        return e.item;
     }
 
-    private TreeView <MCT_Node> erstelleVisualization(MCT_Node rootknoten){
-        Node nodeIcon = produziereNodeIcon(rootknoten.getState());
-        TreeItem<MCT_Node> tiRoot = new TreeItem<MCT_Node> (rootknoten,nodeIcon);   
-        rekursiverAufbau(rootknoten,tiRoot,0);
-        return new TreeView<MCT_Node>(tiRoot);
-    }
-    
-    private void rekursiverAufbau(MCT_Node vaterknoten, TreeItem tiVater, int tiefe ){
-        ArrayList <MCT_Node> kinder = vaterknoten.getChildren();
-        for (MCT_Node kind : kinder){
-            Node nodeIcon = produziereNodeIcon(kind.getState());
-            TreeItem<MCT_Node> tiKind = new TreeItem<MCT_Node> (kind,nodeIcon);            
-            tiVater.getChildren().add(tiKind);
-            rekursiverAufbau(kind, tiKind, tiefe+1);
+    private char[] state(Entry e){
+        if (e.state==null){
+            e.state = state(e.father).clone();
+            e.state[e.action] = e.player;
         }
+        return e.state;
+    }
+
+    private static String label(Entry e){
+        String feld = (e.action<0) ? "root" : "field "+e.action;
+        return feld+"  "+e.player+":["+((int)e.score)+"/"+e.visits+"]";
     }
-    
+
     private Node produziereNodeIcon(char[] zustand){
         Label lbS = new Label(TicTacToe_Env.matrixToString(zustand));
         lbS.setFont(new Font("Courier New", 12));
         Scene scene = new Scene(new StackPane(lbS));
         return new ImageView(lbS.snapshot(null, null));
     }
-    
+
     /**
      * Fügt Textinformationen hinzu.
      * @param information Text, der im Info-Reiter hinzugefügt werden soll.
@@ -108,7 +351,7 @@ public class JfxMCTreeVisualizer{
             taTextLog.appendText(information);
         });
     }
-    
+
     /**
      * Fügt eine Zeile Textinformationen hinzu.
      * @param information Textzeile,die im Info-Reiter hinzugefügt werden soll.
@@ -116,7 +359,7 @@ public class JfxMCTreeVisualizer{
     public void appendln(String information){
         append(information+"\n");
     }
-    
+
     /**
      * Fügt einen Zeitstempel im Info-Reiter hinzu.
      */
@@ -124,5 +367,5 @@ public class JfxMCTreeVisualizer{
     {
         append(sdf.format(new Timestamp(System.currentTimeMillis())));
     }
-    
+
 }
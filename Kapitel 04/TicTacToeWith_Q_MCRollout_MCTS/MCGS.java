@@ -0,0 +1,207 @@
+/**
+ * TicTacToe agent with Monte-Carlo graph search (MCGS). In a search tree a position that can be reached with
+ * different move orders appears as several nodes, each with only a part of the statistics. Here each position
+ * (board and player to move) has exactly one node: the nodes are kept in a transposition table that is indexed
+ * directly with the ternary state key (as QLearning.calculateStateKey), so the search tree becomes a directed
+ * acyclic graph.
+ *
+ * Since a node can have several fathers, the result of a rollout is backpropagated along the path that was
+ * actually selected, not along the father references. In addition to the node statistics, each node counts the
+ * visits of the edges to its children: the selection combines the mean score of a child over all its visits with
+ * an exploration term over the edge visits, and the move with the most visited edge is played.
+ *
+ * The graph is kept during a game; when a position does not follow from the last one (new game), the nodes go
+ * back to the node pool. The search is sequential, the parallel modes of MCTS are not used.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class MCGS extends MCTS
+{
+    private final MCT_Node[] transpositions = new MCT_Node[59049]; // state key -> node
+    private int numNodes = 0;
+    private int lastBoard = -1; // position of the last move, -1 if the graph is empty
+
+    private final MCT_Node[] path = new MCT_Node[10];
+    private final int[] slot = new int[10]; // slot[i]: slot of path[i] among the children of path[i-1]
+
+    public MCGS(char spieler,TicTacToe_Env umgebung, String ident, long timelimit)
+    {
+        super(spieler,umgebung, ident, timelimit);
+    }
+
+    @Override
+    public int policy(char[] state)
+    {
+        char opponent = (ownSign=='o') ? 'x':'o';
+        int board = TicTacToe_Bitboard.fromChars(state);
+        if (TicTacToe_Bitboard.free(board)==0) return -1;
+        long endTime = System.currentTimeMillis()+timelimit; int c=0;
+
+        // a position of the same game contains all stones of the last position
+        if ((lastBoard>=0)&&((lastBoard&~board)!=0)) clear();
+        lastBoard = board;
+        MCT_Node root = node(board,opponent);
+        int visitsBefore = root.getVisits();
+
+        while ((System.currentTimeMillis() < endTime) && (c<getMaxRollouts())){
+            int depth=0;
+            MCT_Node node = root;
+            path[depth++]=node;
+            while (node.getNumberOfChildren() != 0) {
+                int i = node.childWithMaxUCTGraph();
+                node = node.getChild(i);
+                slot[depth]=i;
+                path[depth++]=node;
+            }
+            if (TicTacToe_Bitboard.winner(node.getBoard())=='-') {
+                expand(node);
+            }
+            if (node.getNumberOfChildren() > 0) { // falls der Knoten Kinder hat
+                int i = random.nextInt(node.getNumberOfChildren());
+                node = node.getChild(i);
+                slot[depth]=i;
+                path[depth++]=node;
+            }
+            int action = (depth>1) ? action(path[depth-2],node) : node.getActionFromFather();
+            double v = rollout_evaluation(node.getBoard(),action,TicTacToe_Bitboard.playerIndex(node.getPlayer()));
+            backpropagation(depth, v);
+            c++;
+        }
+
+        if (konsolenausgabe_mct){
+            System.out.println("ROOT:"+root.toString()+" nodes in graph: "+numNodes+TicTacToe_Env.matrixToString(root.getState()));
+        }
+        int best = 0;
+        for (int i=1;i<root.getNumberOfChildren();i++){
+            if (root.getEdgeVisits(i)>root.getEdgeVisits(best)) best=i;
+        }
+        rolloutsLastMove = root.getVisits()-visitsBefore;
+        return action(root,root.getChild(best));
+    }
+
+    /**
+     * Returns the node of a position, creates it if necessary.
+     * @param board position
+     * @param player player who made the last move (the other player is to move)
+     */
+    private MCT_Node node(int board, char player)
+    {
+        char toMove = (player=='o') ? 'x':'o';
+        int key = TicTacToe_Bitboard.stateKey(board,toMove);
+        MCT_Node node = transpositions[key];
+        if (node==null){
+            node = pool.obtain();
+            node.setBoard(board);
+            node.setPlayer(player);
+            transpositions[key] = node;
+            numNodes++;
+        }
+        return node;
+    }
+
+    /**
+     * Links the successor positions of a node, positions that are already in the graph are not created again.
+     */
+    private void expand(MCT_Node node)
+    {
+        int board = node.getBoard();
+        char childNodePlayer = (node.getPlayer()=='o') ? 'x':'o';
+        int p = TicTacToe_Bitboard.playerIndex(childNodePlayer);
+        int n = 0;
+        for (int f=TicTacToe_Bitboard.free(board);f!=0;f&=f-1){
+            int a = Integer.numberOfTrailingZeros(f);
+            int before = numNodes;
+            MCT_Node child = node(TicTacToe_Bitboard.play(board,a,p),childNodePlayer);
+            if (numNodes>before){
+                child.setFather(node);
+                node.setChild(n++,child,a);
+            }else{
+                node.setChild(n++,child);
+            }
+        }
+        node.publishChildren(n);
+    }
+
+    /**
+     * Backpropagation along the selected path: node and edge statistics.
+     * @param depth length of the path
+     * @param score result of the rollout from the point of view of the player of the last node
+     */
+    private void backpropagation(int depth, double score)
+    {
+        MCT_Node node = path[depth-1];
+        score = Math.round(score);
+        char winner = '-';
+        if (score>0) winner=node.getPlayer();
+        if (score<0) winner=node.getOpponent();
+        if (score==0) winner=ownSign;
+        for (int i=depth-1;i>=0;i--) {
+            path[i].incVisits();
+            if (path[i].getPlayer() == winner) {
+                path[i].addScore(1);
+            }
+            if (i>0) path[i-1].incEdgeVisits(slot[i]);
+        }
+    }
+
+    /**
+     * Returns the field of the move from a position to a successor. In the graph a node has an action from
+     * each of its fathers, so the action is determined from the boards.
+     */
+    private static int action(MCT_Node father, MCT_Node child)
+    {
+        return Integer.numberOfTrailingZeros(TicTacToe_Bitboard.free(father.getBoard())&~TicTacToe_Bitboard.free(child.getBoard()));
+    }
+
+    /**
+     * Gives all nodes of the graph back to the node pool.
+     */
+    private void clear()
+    {
+        for (int k=0;k<transpositions.length;k++){
+            if (transpositions[k]!=null){
+                pool.releaseNode(transpositions[k]);
+                transpositions[k]=null;
+            }
+        }
+        numNodes=0;
+        lastBoard=-1;
+    }
+
+    /**
+     * UCT for a search graph.
+     * @param N visits of all edges of the father
+     * @param q mean score of the child
+     * @param n_a visits of the edge to the child
+     */
+    public static double uct(int N, double q, int n_a)
+    {
+        if (n_a == 0) {
+            return Integer.MAX_VALUE;
+        }
+        return q + 1.414*Math.sqrt(Math.log(N)/(double)n_a);
+    }
+
+    /**
+     * Returns the number of positions in the graph.
+     */
+    public int getNumberOfNodes()
+    {
+        return numNodes;
+    }
+}
@@ -1,8 +1,30 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * TicTacToe agent that evaluates actions using Monte Carlo tree search (MCTS).
  *
+ * Besides the sequential search there are two parallel modes, in which several threads search on bitboards
+ * until the time limit or the total number of rollouts (getMaxRollouts) is reached:
+ *  - ROOT_PARALLEL: each thread builds its own tree, the statistics of the children of the roots are added up.
+ *  - TREE_PARALLEL: all threads search in the same tree. The node statistics are updated atomically and the
+ *    nodes on the path of a running rollout carry a virtual loss, so that the threads spread over the tree.
+ * With a time limit, the number of rollouts per move grows with the number of cores.
+ *
+ * The agent keeps its tree between the moves: if the new position is a grandchild of the last root (own move
+ * and reply of the opponent), the search continues in that subtree with its statistics, the rest of the tree is
+ * given back to the node pool.
+ *
+ * Optionally the selection uses RAVE (rapid action value estimation): a move that was played later in a rollout
+ * through a node counts as if it had been played first ("all moves as first", AMAF). These statistics grow much
+ * faster than the visits and guide the search while an action has only few visits.
+ *
  * Supplementary material to the book: 
  * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
  * https://link.springer.com/book/10.1007/978-3-031-09030-1
@@ -22,8 +44,23 @@ import java.util.List;
  */
 public class MCTS extends MonteCarlo_Rollout 
 {
+    public static final int SEQUENTIAL = 0;
+    public static final int ROOT_PARALLEL = 1;
+    public static final int TREE_PARALLEL = 2;
+    
+    public static double RAVE_EQUIVALENCE = 300; // k of the agent "MCTS RAVE"
+    public static double RAVE_EXPLORATION = 0.7; // exploration constant of UCT with RAVE
+    
     protected long timelimit = 50;
+    protected int parallelMode = SEQUENTIAL;
+    protected int threads = Runtime.getRuntime().availableProcessors();
+    protected int rolloutsLastMove = 0;
+    protected boolean reuseTree = true;
+    protected MCT_NodePool pool = new MCT_NodePool(MCT_NodePool.DEFAULT_SIZE);
+    protected MCT_Node[] lastRoots = new MCT_Node[0]; // roots of the last move, one per tree
+    protected double raveEquivalence = 0; // RAVE equivalence parameter k, 0: plain UCT
     public boolean konsolenausgabe_mct = false;
+    public boolean visualisierung_mct = false; // the search tree is shown live in a JfxMCTreeVisualizer
     public JfxMCTreeVisualizer jfxMCTreeVisualizer;
     
     /**
@@ -42,14 +79,25 @@ public class MCTS extends MonteCarlo_Rollout
         char[] backup = getState();
         char opponent = (ownSign=='o') ? 'x':'o';
         if (TicTacToe_Agent.coursesOfAction(state).size()==0) return -1;
-        MC_Tree mct = new MC_Tree(state);
-        MCT_Node root = mct.getRoot();
-        root.setState(state);
-        root.setPlayer(opponent);
         long endTime = System.currentTimeMillis()+timelimit; int c=0;
-        while ((System.currentTimeMillis() < endTime) && (c<getMaxRollouts())){
+        int mode = TicTacToe_Env.bitboard() ? parallelMode : SEQUENTIAL; // m,n,k-games are searched sequentially on char[]
+        MCT_Node[] roots = nextRoots(state,opponent,(mode==ROOT_PARALLEL) ? threads : 1);
+        if (visualisierung_mct){
+            MC_Tree mct = new MC_Tree();
+            mct.setRoot(roots[0]);
+            visualize(mct); // Ausgabe des Monte Carlo Baums während der Suche
+        }
+        if (mode==ROOT_PARALLEL) return rootParallelPolicy(roots,endTime);
+        MCT_Node root = roots[0];
+        int visitsBefore = root.getVisits();
+        if (mode==TREE_PARALLEL){
+            MCT_Node[] workerRoots = new MCT_Node[threads];
+            Arrays.fill(workerRoots,root);
+            runWorkers(workerRoots,endTime,true);
+        }
+        while ((mode!=TREE_PARALLEL) && (System.currentTimeMillis() < endTime) && (c<getMaxRollouts())){
             MCT_Node selectedNode = selection(root);
-            if (TicTacToe_Env.checkMatrixWon(selectedNode.getState())=='-') {
+            if (isOpen(selectedNode)) {
                 expand(selectedNode);
             }
             MCT_Node nodeToBeEvaluated = selectedNode; 
@@ -57,47 +105,233 @@ public class MCTS extends MonteCarlo_Rollout
                 nodeToBeEvaluated = selectedNode.selectChildRandomly();
             }
             
-            setState(nodeToBeEvaluated.getState());
-            double v = rollout_evaluation(nodeToBeEvaluated.getActionFromFather(),nodeToBeEvaluated.getPlayer());
+            double v;
+            int finalBoard = -1;
+            if (TicTacToe_Env.bitboard() && !konsolenausgabe_rollouts){
+                int p = TicTacToe_Bitboard.playerIndex(nodeToBeEvaluated.getPlayer());
+                finalBoard = rollout_board(nodeToBeEvaluated.getBoard(),nodeToBeEvaluated.getActionFromFather(),p);
+                v = TicTacToe_Agent.getReward(finalBoard,p);
+            }else{
+                setState(nodeToBeEvaluated.getState());
+                v = rollout_evaluation(nodeToBeEvaluated.getActionFromFather(),nodeToBeEvaluated.getPlayer());
+            }
            
-            backpropagation(nodeToBeEvaluated, v);
+            backpropagation(nodeToBeEvaluated, v, false, finalBoard);
             c++; 
         }
         
         if (konsolenausgabe_mct){
-            visualize(mct); // ggf Ausgabe des Monte Carlo Baums
             System.out.println("ROOT:"+root.toString()+TicTacToe_Env.matrixToString(root.getState()));
         }
         MCT_Node bestNode = root.childWithMaxScore();
+        rolloutsLastMove = root.getVisits()-visitsBefore;
         
         setState(backup);
         return bestNode.getActionFromFather();
     }
     
+    /**
+     * Root parallelisation: each thread searches in its own tree, the action with the largest sum of the scores
+     * over all trees is selected.
+     */
+    private int rootParallelPolicy(MCT_Node[] roots, long endTime)
+    {
+        rolloutsLastMove = 0;
+        for (MCT_Node root : roots) rolloutsLastMove -= root.getVisits();
+        runWorkers(roots,endTime,false);
+        double[] score = new double[TicTacToe_Env.fields()];
+        boolean[] possible = new boolean[TicTacToe_Env.fields()];
+        for (MCT_Node root : roots){
+            rolloutsLastMove += root.getVisits();
+            for (int i=0;i<root.getNumberOfChildren();i++){
+                MCT_Node child = root.getChild(i);
+                score[child.getActionFromFather()]+=child.getScore();
+                possible[child.getActionFromFather()]=true;
+            }
+        }
+        int best = -1;
+        for (int a=0;a<score.length;a++){
+            if (possible[a]&&((best<0)||(score[a]>score[best]))) best=a;
+        }
+        if (konsolenausgabe_mct){
+            for (MCT_Node root : roots) System.out.println("ROOT:"+root.toString());
+        }
+        return best;
+    }
+    
+    /**
+     * Runs one search per root in parallel, on the calling thread and on the common ForkJoinPool.
+     * @param roots roots of the searches (the same node several times for tree parallelisation)
+     * @param endTime end of the time limit
+     * @param virtualLoss true, if the searches share the tree
+     */
+    private void runWorkers(MCT_Node[] roots, final long endTime, final boolean virtualLoss)
+    {
+        final AtomicInteger rollouts = new AtomicInteger();
+        List <ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int i=1;i<roots.length;i++){
+            final MCT_Node root = roots[i];
+            tasks.add(ForkJoinPool.commonPool().submit(new Runnable(){
+                public void run(){
+                    search(root,endTime,rollouts,virtualLoss);
+                }
+            }));
+        }
+        search(roots[0],endTime,rollouts,virtualLoss);
+        for (ForkJoinTask<?> task : tasks) task.join();
+    }
+    
+    /**
+     * Search loop of one thread on bitboards (selection, expansion, rollout, backpropagation).
+     * @param root root of the tree
+     * @param endTime end of the time limit
+     * @param rollouts rollouts of all threads so far
+     * @param virtualLoss true, if the nodes on the path carry a virtual loss during the rollout
+     */
+    private void search(MCT_Node root, long endTime, AtomicInteger rollouts, boolean virtualLoss)
+    {
+        Random random = ThreadLocalRandom.current();
+        while ((System.currentTimeMillis() < endTime) && (rollouts.getAndIncrement()<getMaxRollouts())){
+            MCT_Node node = root;
+            if (virtualLoss) node.addVirtualLoss();
+            while (node.getNumberOfChildren() != 0) {
+                node = node.childWithMaxUCT(raveEquivalence);
+                if (virtualLoss) node.addVirtualLoss();
+            }
+            if (TicTacToe_Bitboard.winner(node.getBoard())=='-') {
+                expandAtomically(node);
+            }
+            MCT_Node child = node.selectChildRandomly(random);
+            if (child != null) { // falls der Knoten Kinder hat
+                node = child;
+                if (virtualLoss) node.addVirtualLoss();
+            }
+            int p = TicTacToe_Bitboard.playerIndex(node.getPlayer());
+            int finalBoard = rollout_board(node.getBoard(),node.getActionFromFather(),p);
+            backpropagation(node, TicTacToe_Agent.getReward(finalBoard,p), virtualLoss, finalBoard);
+        }
+    }
+    
+    /**
+     * Provides the roots for the search in a position. If the tree is reused, a root is the grandchild of the
+     * last root with this position (or the last root itself); everything else of the old trees goes back to the
+     * node pool.
+     * Trees of m,n,k-games (char[] nodes) are not reused.
+     * @param state position
+     * @param opponent player who made the last move
+     * @param n number of trees
+     * @return roots of the trees
+     */
+    private MCT_Node[] nextRoots(char[] state, char opponent, int n)
+    {
+        boolean bitboard = TicTacToe_Env.bitboard();
+        int board = bitboard ? TicTacToe_Bitboard.fromChars(state) : TicTacToe_Bitboard.EMPTY;
+        MCT_Node[] roots = new MCT_Node[n];
+        for (int i=0;i<Math.max(n,lastRoots.length);i++){
+            MCT_Node old = (i<lastRoots.length) ? lastRoots[i] : null;
+            MCT_Node root = (reuseTree&&bitboard&&(i<n)) ? findSubtree(old,board,opponent) : null;
+            pool.release(old,root);
+            if (i>=n) continue;
+            if (root==null){
+                root = pool.obtain();
+                if (bitboard){
+                    root.setBoard(board);
+                }else{
+                    root.setState(state.clone());
+                }
+                root.setPlayer(opponent);
+            }
+            root.setFather(null);
+            root.setActionFromFather(-1);
+            roots[i] = root;
+        }
+        lastRoots = roots;
+        return roots;
+    }
+    
+    /**
+     * Searches the position in the last root and its grandchildren.
+     * @return node of the position, null if it is not in the tree
+     */
+    private static MCT_Node findSubtree(MCT_Node old, int board, char opponent)
+    {
+        if (old==null) return null;
+        if ((old.getBoard()==board)&&(old.getPlayer()==opponent)) return old;
+        for (int i=0;i<old.getNumberOfChildren();i++){
+            MCT_Node child = old.getChild(i);
+            for (int j=0;j<child.getNumberOfChildren();j++){
+                MCT_Node grandchild = child.getChild(j);
+                if ((grandchild.getBoard()==board)&&(grandchild.getPlayer()==opponent)) return grandchild;
+            }
+        }
+        return null;
+    }
+    
     private MCT_Node selection(MCT_Node root)
     {
         MCT_Node node = root;
         while (node.getNumberOfChildren() != 0) {
-            node = node.childWithMaxUCT();
+            node = node.childWithMaxUCT(raveEquivalence);
         }
         return node;
     }
     
+    private boolean isOpen(MCT_Node node)
+    {
+        if (TicTacToe_Env.bitboard()) return TicTacToe_Bitboard.winner(node.getBoard())=='-';
+        return TicTacToe_Env.checkMatrixWon(node.getState(),node.getActionFromFather())=='-';
+    }
+    
     private void expand(MCT_Node node){
+        if (TicTacToe_Env.bitboard()){
+            // child boards are values, their char[] states are only created for the display
+            expandAtomically(node);
+            return;
+        }
         char[] fatherState = node.getState();
         char childNodePlayer = (node.getPlayer()=='o') ? 'x':'o';
         List <Integer> moeglicheAktionen = coursesOfAction(fatherState);
         for (int a : moeglicheAktionen){
-            char[] childState = fatherState.clone();
-            childState[a]=childNodePlayer; // perform action 
-            MCT_Node newNode = new MCT_Node(childState);
+            MCT_Node newNode = pool.obtain(); // the state (father state with action a) is created when needed
             newNode.setPlayer(childNodePlayer);
             newNode.setFather(node);
             node.addChild(newNode,a);
         }
     }
     
-    private void backpropagation(MCT_Node node, double score) 
+    /**
+     * Expands a leaf on bitboards. The children are published at once, if several threads reach the leaf,
+     * only the first one expands it.
+     */
+    private void expandAtomically(MCT_Node node)
+    {
+        synchronized (node){
+            if (node.getNumberOfChildren() != 0) return;
+            int board = node.getBoard();
+            char childNodePlayer = (node.getPlayer()=='o') ? 'x':'o';
+            int p = TicTacToe_Bitboard.playerIndex(childNodePlayer);
+            int n = 0;
+            for (int f=TicTacToe_Bitboard.free(board);f!=0;f&=f-1){
+                int a = Integer.numberOfTrailingZeros(f);
+                MCT_Node newNode = pool.obtain();
+                newNode.setBoard(TicTacToe_Bitboard.play(board,a,p));
+                newNode.setPlayer(childNodePlayer);
+                newNode.setFather(node);
+                node.setChild(n++,newNode,a);
+            }
+            node.publishChildren(n);
+        }
+    }
+    
+    /**
+     * Backpropagation of a rollout result to the root. With RAVE, the AMAF statistics of the children of the
+     * nodes on the path are updated as well.
+     * @param node node from which the rollout started
+     * @param score result of the rollout from the point of view of the player of the node
+     * @param virtualLoss true, if the virtual losses on the path are removed
+     * @param finalBoard board at the end of the rollout, -1 if unknown (no AMAF update)
+     */
+    private void backpropagation(MCT_Node node, double score, boolean virtualLoss, int finalBoard) 
     {
         MCT_Node temp = node;
         score = Math.round(score);
@@ -110,8 +344,12 @@ public class MCTS extends MonteCarlo_Rollout
             if (temp.getPlayer() == winner) {
                 temp.addScore(1);
             }
+            if (virtualLoss) temp.removeVirtualLoss();
+            if ((raveEquivalence>0)&&(finalBoard>=0)) temp.updateAMAF(finalBoard,winner);
             temp = temp.getFather();
         }
+        JfxMCTreeVisualizer visualizer = jfxMCTreeVisualizer;
+        if (visualisierung_mct && (visualizer!=null)) visualizer.pathUpdated(node);
     }
     
     public static double uct(int N, double w_a, int N_a) 
@@ -122,6 +360,26 @@ public class MCTS extends MonteCarlo_Rollout
         return (w_a/(double)N_a) + 1.414*Math.sqrt(Math.log(N)/(double)N_a);
     }
     
+    /**
+     * UCT with RAVE: the mean score of the action is blended with its AMAF ("all moves as first") value. The
+     * weight beta = sqrt(k/(3*N_a+k)) of the AMAF value decays with the visits of the action, k is the number of
+     * visits at which both values have the same weight. Since the AMAF values already spread the search, the
+     * exploration term is smaller (RAVE_EXPLORATION).
+     * @param N visits of the father
+     * @param w_a score of the action
+     * @param N_a visits of the action
+     * @param w_amaf AMAF score of the action
+     * @param N_amaf AMAF visits of the action
+     * @param k equivalence parameter (0: plain UCT)
+     */
+    public static double uct(int N, double w_a, int N_a, double w_amaf, int N_amaf, double k)
+    {
+        if ((k<=0)||(N_amaf==0)) return uct(N,w_a,N_a);
+        double beta = Math.sqrt(k/(3.0*N_a+k));
+        double q = (N_a==0) ? 0.0 : w_a/(double)N_a; // an action without visits is rated by its AMAF value
+        return (1.0-beta)*q + beta*(w_amaf/(double)N_amaf) + RAVE_EXPLORATION*Math.sqrt(Math.log(N+1)/(double)(N_a+1));
+    }
+    
     public void setZeitlimit(long timelimit)
     {
         this.timelimit=timelimit;
@@ -132,12 +390,65 @@ public class MCTS extends MonteCarlo_Rollout
         return this.timelimit;
     }
     
+    /**
+     * Sets the parallelisation of the search.
+     * @param mode SEQUENTIAL, ROOT_PARALLEL or TREE_PARALLEL
+     */
+    public void setParallelMode(int mode)
+    {
+        this.parallelMode=mode;
+    }
+    
+    public int getParallelMode()
+    {
+        return this.parallelMode;
+    }
+    
+    /**
+     * Sets the number of threads of the parallel modes (default: number of cores).
+     */
+    public void setThreads(int threads)
+    {
+        this.threads=Math.max(1,threads);
+    }
+    
+    /**
+     * Sets the equivalence parameter of RAVE (see uct), 0 switches RAVE off. The AMAF statistics are collected
+     * on the bitboard path.
+     */
+    public void setRave(double k)
+    {
+        this.raveEquivalence=k;
+    }
+    
+    /**
+     * Switches the reuse of the tree between the moves on or off.
+     */
+    public void setTreeReuse(boolean reuse)
+    {
+        this.reuseTree=reuse;
+    }
+    
+    /**
+     * Returns the number of rollouts of the last move (of all threads).
+     */
+    public int getRolloutsLastMove()
+    {
+        return this.rolloutsLastMove;
+    }
+    
+    /**
+     * Shows a Monte-Carlo tree in the visualizer, which is created on first use. During the search the
+     * backpropagation sends the changed statistics to the visualizer.
+     * @param mct tree with the root of the search
+     */
     public void visualize(MC_Tree mct)
     {
-        // MCT_Node root = this.root;
-        // if (jfxMCTreeVisualizer==null) 
-        // jfxMCTreeVisualizer = new JfxMCTreeVisualizer(mct,"Monte-Carlo Tree");
-        // jfxMCTreeVisualizer.updateVisualisation(mct);
+        if (jfxMCTreeVisualizer==null){
+            jfxMCTreeVisualizer = new JfxMCTreeVisualizer(mct,"Monte-Carlo Tree");
+        }else{
+            jfxMCTreeVisualizer.updateVisualisation(mct);
+        }
     }
  
 }
@@ -1,9 +1,18 @@
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Node of a Monte-Carlo search tree.
  *
+ * The statistics are updated atomically, so several threads can search in the same tree (tree parallelisation
+ * of MCTS). A thread that has selected a path through the tree adds a "virtual loss" to its nodes until the
+ * result of its rollout is backpropagated. childWithMaxUCT counts the virtual losses as visits without a win,
+ * so the other threads are steered into different branches.
+ *
+ * The children are kept in an array with one slot per possible move, nodes can be reused with a MCT_NodePool.
+ *
  * Supplementary material to the book: 
  * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
  * https://link.springer.com/book/10.1007/978-3-031-09030-1
@@ -26,39 +35,100 @@ public class MCT_Node
     private static Random zufall = new Random();
     
     // Zustand
-    protected char[] feld;
+    protected char[] feld;  // created on demand from the bitboard or (m,n,k-games) from the state of the father
+    protected int board;    // bitboard (see TicTacToe_Bitboard)
     
     // Statistik
     char player;
-    int besuche;
-    double score;
+    volatile int besuche;
+    volatile long scoreBits; // score as double bits, see getScore
+    volatile int virtualLoss;
+    volatile int amafVisits; // AMAF statistics of the action leading to this node (RAVE)
+    volatile int amafScore;
     
     int aktionVonFather = -1; 
     MCT_Node fatherNode = null;
     
-    ArrayList <MCT_Node> children = new ArrayList<MCT_Node>();
+    private static final MCT_Node[] NO_CHILDREN = new MCT_Node[0];
+    private static final int[] NO_EDGES = new int[0];
+
+    MCT_Node[] children = NO_CHILDREN; // one slot per field, created when the node gets its first child
+    volatile int numChildren = 0; // set after the children are entered, see publishChildren
+    int[] edgeVisits = NO_EDGES; // visits of the edges to the children (graph search, see MCGS)
+
+    private static final AtomicIntegerFieldUpdater<MCT_Node> BESUCHE =
+        AtomicIntegerFieldUpdater.newUpdater(MCT_Node.class,"besuche");
+    private static final AtomicLongFieldUpdater<MCT_Node> SCORE =
+        AtomicLongFieldUpdater.newUpdater(MCT_Node.class,"scoreBits");
+    private static final AtomicIntegerFieldUpdater<MCT_Node> VIRTUAL_LOSS =
+        AtomicIntegerFieldUpdater.newUpdater(MCT_Node.class,"virtualLoss");
+    private static final AtomicIntegerFieldUpdater<MCT_Node> AMAF_VISITS =
+        AtomicIntegerFieldUpdater.newUpdater(MCT_Node.class,"amafVisits");
+    private static final AtomicIntegerFieldUpdater<MCT_Node> AMAF_SCORE =
+        AtomicIntegerFieldUpdater.newUpdater(MCT_Node.class,"amafScore");
     
     public MCT_Node()
     {
-        this.feld =  new char[] {'-','-','-','-','-','-','-','-','-'};
+        this.feld =  TicTacToe_Env.emptyBoard();
+        this.board = TicTacToe_Bitboard.EMPTY;
     }
     
     public MCT_Node(char[] s)
     {
         this.feld=s;
+        this.board=(s.length==9) ? TicTacToe_Bitboard.fromChars(s) : TicTacToe_Bitboard.EMPTY;
+    }
+
+    public MCT_Node(int board)
+    {
+        this.board=board;
+    }
+
+    /**
+     * Resets the node for reuse from a MCT_NodePool.
+     */
+    void reset()
+    {
+        for (int i=0;i<numChildren;i++){
+            children[i]=null;
+            edgeVisits[i]=0;
+        }
+        numChildren=0;
+        if (children.length!=TicTacToe_Env.fields()){ // board size has changed
+            children = NO_CHILDREN;
+            edgeVisits = NO_EDGES;
+        }
+        feld=null;
+        board=TicTacToe_Bitboard.EMPTY;
+        player=0;
+        besuche=0;
+        scoreBits=0L;
+        virtualLoss=0;
+        amafVisits=0;
+        amafScore=0;
+        aktionVonFather=-1;
+        fatherNode=null;
     }
     
     public MCT_Node selectChildRandomly()
     {
-        if (children.isEmpty()) return null;
-        return children.get(zufall.nextInt(children.size()));
+        return selectChildRandomly(zufall);
+    }
+
+    public MCT_Node selectChildRandomly(Random random)
+    {
+        int n = numChildren;
+        if (n==0) return null;
+        return children[random.nextInt(n)];
     }
     
     public MCT_Node childWithMaxScore()
     {
         MCT_Node ret = null;
         double max = Double.NEGATIVE_INFINITY;
-        for (MCT_Node knoten : children){
+        int n = numChildren;
+        for (int i=0;i<n;i++){
+            MCT_Node knoten = children[i];
             if (knoten.getScore()>max){
                 max = knoten.getScore();
                 ret = knoten;
@@ -68,11 +138,24 @@ public class MCT_Node
     }
     
     public MCT_Node childWithMaxUCT() 
+    {
+        return childWithMaxUCT(0);
+    }
+
+    /**
+     * Selection with UCT, with RAVE if k>0 (see MCTS.uct).
+     * @param k RAVE equivalence parameter
+     */
+    public MCT_Node childWithMaxUCT(double k)
     {
         double maxUCT = Double.NEGATIVE_INFINITY;  
         MCT_Node maxChild = null;
-        for (MCT_Node kind : children){
-            double bewertung = MCTS.uct(besuche,kind.getScore(),kind.getVisits());
+        int N = besuche+virtualLoss;
+        int n = numChildren;
+        for (int i=0;i<n;i++){
+            MCT_Node kind = children[i];
+            double bewertung = MCTS.uct(N,kind.getScore(),kind.getVisits()+kind.getVirtualLoss(),
+                                        kind.amafScore,kind.amafVisits,k);
             if (bewertung>maxUCT){
                 maxUCT=bewertung;
                 maxChild=kind;
@@ -81,18 +164,121 @@ public class MCT_Node
         return maxChild;
     }
     
+    /**
+     * Returns a list of the children (a copy, for output and display).
+     */
     public ArrayList <MCT_Node> getChildren(){
-        return children;
+        ArrayList <MCT_Node> list = new ArrayList<MCT_Node>();
+        int n = numChildren;
+        for (int i=0;i<n;i++) list.add(children[i]);
+        return list;
+    }
+
+    /**
+     * Selection in a search graph (see MCGS): the value of a child is its mean score over all its visits, the
+     * exploration term uses the visits of the edges from this node.
+     * @return slot of the selected child
+     */
+    public int childWithMaxUCTGraph()
+    {
+        int n = numChildren;
+        int N = 0;
+        for (int i=0;i<n;i++) N+=edgeVisits[i];
+        double maxUCT = Double.NEGATIVE_INFINITY;
+        int maxChild = -1;
+        for (int i=0;i<n;i++){
+            MCT_Node kind = children[i];
+            double q = (kind.getVisits()>0) ? kind.getScore()/kind.getVisits() : 0.0;
+            double bewertung = MCGS.uct(N,q,edgeVisits[i]);
+            if (bewertung>maxUCT){
+                maxUCT=bewertung;
+                maxChild=i;
+            }
+        }
+        return maxChild;
+    }
+
+    public int getEdgeVisits(int i)
+    {
+        return edgeVisits[i];
+    }
+
+    public void incEdgeVisits(int i)
+    {
+        edgeVisits[i]++;
+    }
+
+    public MCT_Node getChild(int i)
+    {
+        return children[i];
+    }
+
+    /**
+     * Enters a child without making it visible, see publishChildren.
+     */
+    public void setChild(int i, MCT_Node kindknoten, int aktion)
+    {
+        kindknoten.setActionFromFather(aktion);
+        setChild(i,kindknoten);
+    }
+
+    /**
+     * Enters a child that is already part of the graph (see MCGS), its action from the first father is kept.
+     */
+    public void setChild(int i, MCT_Node kindknoten)
+    {
+        if (children.length==0) createSlots();
+        children[i]=kindknoten;
+    }
+
+    /**
+     * Creates the slots for the children. Most nodes of a tree are leaves, so they are only created for nodes
+     * that are expanded; a node from the pool keeps its slots.
+     */
+    private void createSlots()
+    {
+        children = new MCT_Node[TicTacToe_Env.fields()];
+        edgeVisits = new int[TicTacToe_Env.fields()];
+    }
+
+    /**
+     * Makes the children entered with setChild visible at once, so that threads that search in the tree see
+     * either no or all children.
+     * @param n number of children
+     */
+    public void publishChildren(int n)
+    {
+        numChildren = n;
     }
      
     public char[] getState()
     {
+        if (feld==null){
+            if (TicTacToe_Env.bitboard()||(fatherNode==null)){
+                feld=TicTacToe_Bitboard.toChars(board);
+            }else{
+                feld=fatherNode.getState().clone();
+                feld[aktionVonFather]=player;
+            }
+        }
         return feld;
     }
     
     public void setState(char[] s)
     {
         this.feld=s;
+        this.board=(s.length==9) ? TicTacToe_Bitboard.fromChars(s) : TicTacToe_Bitboard.EMPTY; // m,n,k-boards only as char[]
+    }
+
+    public void setBoard(int board)
+    {
+        this.feld=null;
+        this.board=board;
+    }
+
+    public int getBoard()
+    {
+        return board;
     }
     
     public void setPlayer(char player)
@@ -112,7 +298,7 @@ public class MCT_Node
     
     public int getNumberOfChildren()
     {
-        return children.size();
+        return numChildren;
     }
     
     public void setActionFromFather(int aktion){
@@ -127,7 +313,9 @@ public class MCT_Node
     public void addChild(MCT_Node kindknoten, int aktion)
     {
         kindknoten.setActionFromFather(aktion);
-        this.children.add(kindknoten);
+        if (children.length==0) createSlots();
+        children[numChildren]=kindknoten;
+        numChildren++;
     }
     
     public void setFather(MCT_Node father)
@@ -142,17 +330,53 @@ public class MCT_Node
     
     public void addScore(double delta)
     {
-        this.score+=delta;
+        long bits;
+        do {
+            bits = scoreBits;
+        } while (!SCORE.compareAndSet(this,bits,Double.doubleToRawLongBits(Double.longBitsToDouble(bits)+delta)));
     }
     
     public double getScore()
     {
-        return this.score;
+        return Double.longBitsToDouble(scoreBits);
     }
     
     public void incVisits()
     {
-        this.besuche++;
+        BESUCHE.incrementAndGet(this);
+    }
+
+    public void addVirtualLoss()
+    {
+        VIRTUAL_LOSS.incrementAndGet(this);
+    }
+
+    public void removeVirtualLoss()
+    {
+        VIRTUAL_LOSS.decrementAndGet(this);
+    }
+
+    public int getVirtualLoss()
+    {
+        return virtualLoss;
+    }
+
+    /**
+     * Updates the AMAF statistics of the children with the moves of a game that went through this node: a child
+     * counts if its player has set the field of its action at some point after this node.
+     * @param finalBoard bitboard at the end of the game
+     * @param winner winner of the game (as in the backpropagation)
+     */
+    public void updateAMAF(int finalBoard, char winner)
+    {
+        int n = numChildren;
+        for (int i=0;i<n;i++){
+            MCT_Node kind = children[i];
+            int a = kind.aktionVonFather+9*TicTacToe_Bitboard.playerIndex(kind.player);
+            if ((finalBoard&(1<<a))==0) continue;
+            AMAF_VISITS.incrementAndGet(kind);
+            if (kind.player==winner) AMAF_SCORE.incrementAndGet(kind);
+        }
     }
     
     public int getVisits()
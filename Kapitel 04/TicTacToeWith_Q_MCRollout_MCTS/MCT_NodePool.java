@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+/**
+ * Pool of preallocated nodes for Monte-Carlo search trees. MCTS takes its nodes from the pool and gives back the
+ * parts of the tree it does not need any more (the siblings of the moves actually played, or the whole tree at
+ * the end of a game), so that in long tournaments hardly any nodes have to be created and collected.
+ * If the pool is empty, new nodes are created; they return to the pool when they are released.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class MCT_NodePool
+{
+    public static int DEFAULT_SIZE = 10000; // preallocated nodes per MCTS agent
+
+    private MCT_Node[] free;
+    private int numFree = 0;
+
+    public MCT_NodePool(int size)
+    {
+        free = new MCT_Node[Math.max(16,size)];
+        for (int i=0;i<size;i++) free[numFree++] = new MCT_Node(TicTacToe_Bitboard.EMPTY);
+    }
+
+    /**
+     * Takes a reset node from the pool.
+     * @return node without state, statistics, father and children
+     */
+    public synchronized MCT_Node obtain()
+    {
+        if (numFree==0) return new MCT_Node(TicTacToe_Bitboard.EMPTY);
+        MCT_Node node = free[--numFree];
+        free[numFree] = null;
+        return node;
+    }
+
+    /**
+     * Gives a subtree back to the pool.
+     * @param node root of the subtree
+     */
+    public synchronized void release(MCT_Node node)
+    {
+        release(node,null);
+    }
+
+    /**
+     * Gives a subtree back to the pool, except for a subtree within it that is kept.
+     * @param node root of the subtree
+     * @param keep root of the subtree that is kept (may be null)
+     */
+    public synchronized void release(MCT_Node node, MCT_Node keep)
+    {
+        if ((node==null)||(node==keep)) return;
+        for (int i=0;i<node.getNumberOfChildren();i++) release(node.getChild(i),keep);
+        releaseNode(node);
+    }
+
+    /**
+     * Gives a single node back to the pool (without its children, e.g. for the nodes of a search graph).
+     * @param node node
+     */
+    public synchronized void releaseNode(MCT_Node node)
+    {
+        node.reset();
+        if (numFree==free.length) free = Arrays.copyOf(free,2*free.length);
+        free[numFree++] = node;
+    }
+
+    /**
+     * Returns the number of nodes available in the pool.
+     */
+    public synchronized int available()
+    {
+        return numFree;
+    }
+}
@@ -43,6 +43,11 @@ public class MonteCarlo_Rollout extends TicTacToe_Agent
      */
     public double evaluateAction( int action, char player ) 
     {
+        if (TicTacToe_Env.bitboard() && !konsolenausgabe_rollouts) {
+            // rollouts in blocks on the ForkJoinPool, each thread with its own rollout engine
+            int board = TicTacToe_Bitboard.fromChars(state);
+            return new RolloutTask(board,action,TicTacToe_Bitboard.playerIndex(player),samplesNumber).invoke()/samplesNumber;
+        }
         double sum = 0;
         for (int i=1;i<=samplesNumber;i++)
         {
@@ -66,8 +71,12 @@ public class MonteCarlo_Rollout extends TicTacToe_Agent
      * @param player the character of the active player ('x' or 'o')
      * @return Evaluation of the action from the point of view of the specified player.
      */
-    public double rollout_evaluation( int action, char player ) 
+    public double rollout_evaluation( int action, char player )
     {
+        if (TicTacToe_Env.bitboard() && !konsolenausgabe_rollouts) {
+            return rollout_evaluation(TicTacToe_Bitboard.fromChars(state),action,TicTacToe_Bitboard.playerIndex(player));
+        }
+
         // run action on a trial basis
         state[action]=player;
         
@@ -76,7 +85,7 @@ public class MonteCarlo_Rollout extends TicTacToe_Agent
         }
         
         // If field state generates a reward for the player, then return the reward and you're done.
-        double reward = getReward(state, player);
+        double reward = getReward(state, action, player);
         if (reward!=0) {
             state[action]='-';
             return reward;
@@ -98,7 +107,34 @@ public class MonteCarlo_Rollout extends TicTacToe_Agent
         
         return value;
      }
-     
+
+    /**
+     * Random game on a bitboard with the rollout engine of the current thread (see TicTacToe_Rollout).
+     *
+     * @param board bitboard before the action
+     * @param action Number of the field into which is set.
+     * @param player player index of the active player (TicTacToe_Bitboard.X or O)
+     * @return Evaluation of the action from the point of view of the specified player.
+     */
+    protected double rollout_evaluation( int board, int action, int player )
+    {
+        return TicTacToe_Rollout.get().evaluate(board,action,player);
+    }
+
+    /**
+     * Random game on a bitboard with the rollout engine of the current thread. Since each field is set at most
+     * once, the final board shows all moves of the game and its result.
+     *
+     * @param board bitboard before the action
+     * @param action Number of the field into which is set.
+     * @param player player index of the active player (TicTacToe_Bitboard.X or O)
+     * @return bitboard at the end of the game
+     */
+    protected static int rollout_board( int board, int action, int player )
+    {
+        return TicTacToe_Rollout.get().finalBoard(board,action,player);
+    }
+
      /**
       * Sets the number of rollouts to be performed in each case.
       * @param n Sample size of MC rollout evaluation.
@@ -59,7 +59,7 @@ public class MonteCarlo_Rollout_With_Policy extends MonteCarlo_Rollout
         state[action]=player;
         
         // Falls Feldzustand für den Spieler eine Belohnung generiert, dann Rückgabe der Belohnung und fertig.
-        double reward = getReward(state, player);
+        double reward = getReward(state, action, player);
         if (reward!=0) {
             state[action]='-';
             return reward;
@@ -38,12 +38,17 @@ public class NegaMax extends TicTacToe_Agent
      * @param player the character of the player ('x' or 'o')
      * @return Evaluation of the action from the point of view of the specified player
      */
-    public double evaluateAction( int action, char player ) 
+    public double evaluateAction( int action, char player )
     {
+        if (TicTacToe_Env.bitboard()) {
+            int board = TicTacToe_Bitboard.fromChars(state);
+            return evaluateAction(board,action,TicTacToe_Bitboard.playerIndex(player))*TicTacToe_Env.REWARD_WIN;
+        }
+
         // generate state (do action as trial)
         state[action]=player;
         
-        double reward = getReward(state, player);
+        double reward = getReward(state, action, player);
         if (reward!=0) {
             state[action]='-';
             return reward;
@@ -70,4 +75,30 @@ public class NegaMax extends TicTacToe_Agent
         state[action]='-'; // undo the trial
         return maxNegative;
      }
+
+    /**
+     * NegaMax on bitboards. Since boards are values, there is no trial to undo and no list is created.
+     *
+     * @param board bitboard before the action
+     * @param action Number of the field into which is set.
+     * @param player player index (TicTacToe_Bitboard.X or O)
+     * @return Evaluation of the action from the point of view of the player (-1, 0 or 1)
+     */
+    public static int evaluateAction( int board, int action, int player )
+    {
+        board = TicTacToe_Bitboard.play(board,action,player);
+        if (TicTacToe_Bitboard.hasWon(board,player)) return 1;
+        int free = TicTacToe_Bitboard.free(board);
+        if (free==0) return 0; // If the field is full, the game is over and the return is 0.
+
+        int maxNegative = Integer.MAX_VALUE;
+        for (int f=free;f!=0;f&=f-1)
+        {
+            int value = -evaluateAction( board, Integer.numberOfTrailingZeros(f), 1-player );
+            if (value < maxNegative) {
+                maxNegative = value;
+            }
+        }
+        return maxNegative;
+    }
 }
\ No newline at end of file
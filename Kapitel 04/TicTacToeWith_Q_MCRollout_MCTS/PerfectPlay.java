@@ -0,0 +1,47 @@
+/**
+ * Optimal playing TicTacToe agent that looks up the values of its actions in the solution database
+ * (see TicTacToe_Solution) instead of searching. It plays like NegaMax, but each evaluation takes constant time,
+ * so it is suited as an opponent in long evaluation runs.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class PerfectPlay extends TicTacToe_Agent
+{
+    private final TicTacToe_Solution solution;
+
+    public PerfectPlay(char player,TicTacToe_Env env, String ident)
+    {
+        super(player,env, ident);
+        solution = TicTacToe_Solution.get();
+    }
+
+    /**
+     * Evaluates an action in a state for one of the players based on the field state attribute (the 9 TicTacToe
+     * fields, they are either '-','x' or 'o') with the game-theoretic value from the solution database. The
+     * actions of the agent are selected with the (greedy-)policy of the superclass.
+     *
+     * @param action Number of the field into which is set.
+     * @param player the character of the player ('x' or 'o')
+     * @return Evaluation of the action from the point of view of the specified player
+     */
+    public double evaluateAction( int action, char player )
+    {
+        int board = TicTacToe_Bitboard.fromChars(state);
+        return solution.evaluateAction(board,action,TicTacToe_Bitboard.playerIndex(player))*TicTacToe_Env.REWARD_WIN;
+    }
+}
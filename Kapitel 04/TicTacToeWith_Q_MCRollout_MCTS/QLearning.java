@@ -35,7 +35,8 @@ public class QLearning extends TicTacToe_Agent
     protected static final double belohnungFuerUnentschieden = TicTacToe_Env.REWARD_WIN/2; 
     
     protected Random random = new Random();
-    protected Map<Integer, HashMap<Integer, Double>> Q; 
+    protected TicTacToe_QTable Q; 
+    public static boolean SYMMETRIES = true; // boards that are equivalent under rotation or reflection share their Q-values
     
     // Anzahl zu spielender Episoden
     protected static final int numberTraininggames = 2500; 
@@ -44,7 +45,7 @@ public class QLearning extends TicTacToe_Agent
     
     // Gegner in Lernenv
     public final static String algorithm_trainingOpponent = "self";         // Algorithm for the opponent on which this algorithm learns.
-    public final static String algorithm_evaluationOpponent = "Arbitrary";  // Algorithm for the opponent on which this algorithm is to be tested.
+    public final static String algorithm_evaluationOpponent = "Arbitrary";  // Algorithm for the opponent on which this algorithm is to be tested ("Perfect Play" for an optimal opponent in constant time).
    
     // Counter
     protected int cnt_gamesPlayed = 0;
@@ -62,9 +63,16 @@ public class QLearning extends TicTacToe_Agent
     protected char currentPlayer = 'x';
     
     protected String QlogFilePath = "data\\";
+    
+    // Training in the background with several self-play workers (see QLearning_Trainer), the world is not blocked
+    // and the greedy policy can be queried during the training.
+    public static boolean BACKGROUND_TRAINING = true;
+    public static int TRAINING_WORKERS = Runtime.getRuntime().availableProcessors();
+    protected QLearning_Trainer trainer = null;
    
     /**
-     * Produces a TicTacToe agent with Q-Learning and runs a training session.
+     * Produces a TicTacToe agent with Q-Learning and runs a training session (in the background, if
+     * BACKGROUND_TRAINING is set).
      * @param player Zeichen des Spielers für den der Agente erzeugt wird.
      * @param env TicTacToe-Umgebung
      * @param ident Bezeichnung des Algorithmsu
@@ -100,7 +108,7 @@ public class QLearning extends TicTacToe_Agent
             tttTestOpponent = env.produceAgent(opponentSymbol,algorithm_evaluationOpponent);
         }
         
-        Q = new HashMap <Integer, HashMap<Integer, Double>>(); 
+        Q = new TicTacToe_QTable(SYMMETRIES); 
         
         // Ausgaben vorbereiten
         JfxChartLogger jfxLogger = new JfxChartLogger(QlogFilePath+"ttt_QLearning_"+tttTrainingOpponent.getAlgIdent()+"_eval_"+tttTestOpponent.getAlgIdent()+"_",
@@ -125,6 +133,49 @@ public class QLearning extends TicTacToe_Agent
         jfxLogger.appendln("training start:;"+timestamp);
         System.out.println("training start:;"+timestamp); 
         
+        if (BACKGROUND_TRAINING && algorithm_trainingOpponent.equals("self")){ // the workers learn by self-play
+            trainer = new QLearning_Trainer(this,jfxLogger,TRAINING_WORKERS);
+            trainer.start(numberTraininggames);
+        }else{
+            trainSequentially(jfxLogger,opponentSymbol);
+        }
+        testphase=true;
+        this.ownSign=player;
+        TicTacToe_Env.MOVE_DETAILS_TO_CONSOLE =backup_sza ;
+        TicTacToe_Env.BOARDSTATE_TO_CONSOLE=backup_sf ;
+        TicTacToe_Env.ACTIONVALUES_TO_CONSOLE=backup_ab ;
+        TicTacToe_Env.DISPLAY_ACTIONVALUES= backup_sfab;
+    }
+    
+    /**
+     * Returns the background training of the agent, null if it was trained in the calling thread.
+     */
+    public QLearning_Trainer getTrainer()
+    {
+        return trainer;
+    }
+    
+    /**
+     * Waits until the background training of the agent has ended, returns at once if the agent was trained in
+     * the calling thread. Needed wherever the agent is to play with its trained Q-table (e.g. agentComparison).
+     */
+    public void awaitTraining()
+    {
+        if (trainer==null) return;
+        try {
+            while (!trainer.awaitCompletion(1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Training session in the calling thread, alternating training intervals and evaluation phases.
+     * @param jfxLogger logger for the results of the evaluation phases
+     * @param opponentSymbol sign of the opponent
+     */
+    protected void trainSequentially(JfxChartLogger jfxLogger, char opponentSymbol)
+    {
         System.out.println("Init2 player="+currentPlayer+" eig Zeichen="+ownSign+"\n"+TicTacToe_Env.matrixToString(state));
         
         while( cnt_gamesPlayed<=numberTraininggames ) 
@@ -209,16 +260,10 @@ public class QLearning extends TicTacToe_Agent
             for (int i=0;i<state.length; i++) state[i]='-';
             moves=0;       
         }
-        timestamp = new Timestamp(System.currentTimeMillis());
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
         System.out.println("training end:;"+timestamp);
         jfxLogger.appendln("training end:;"+timestamp);
         jfxLogger.save(false);
-        testphase=true;
-        this.ownSign=player;
-        TicTacToe_Env.MOVE_DETAILS_TO_CONSOLE =backup_sza ;
-        TicTacToe_Env.BOARDSTATE_TO_CONSOLE=backup_sf ;
-        TicTacToe_Env.ACTIONVALUES_TO_CONSOLE=backup_ab ;
-        TicTacToe_Env.DISPLAY_ACTIONVALUES= backup_sfab;
     }
     
     /**
@@ -240,9 +285,7 @@ public class QLearning extends TicTacToe_Agent
             
         }  
         
-        double q = getQ(s_key, a); 
-        q = q + ETA * (observation - q); 
-        setQ(s_key,a, q); 
+        Q.update(s_key, a, observation, ETA); // q = q + ETA * (observation - q), atomic for several workers
     }
     
     /**
@@ -250,21 +293,23 @@ public class QLearning extends TicTacToe_Agent
      * record is created.
      * @param board board state
      * @param player Sign of the player in question
-     * @return Key for the given state
+     * @return Key for the given state (state handle of the Q-table, see TicTacToe_QTable)
      */
     protected int getState(char[] board, char player) 
     { 
-        int key = QLearning.calculateStateKey(board,player);
-        if(!Q.containsKey(key)){ 
-            HashMap<Integer, Double> vals = new HashMap<Integer, Double>(); 
-            for(int i = 0; i < board.length; i++){ 
-                if(board[i] == '-'){ 
-                    vals.put(i, 0.0);//(random.nextDouble()*2)-1);
-                }
-            } 
-            Q.put(key, vals);
-        }
-        return key;
+        return getState(TicTacToe_Bitboard.fromChars(board),player);
+    } 
+
+    /**
+     * Creates the key for accessing the Q-table for a bitboard. If it does not exist, then the
+     * corresponding record is created.
+     * @param board bitboard (see TicTacToe_Bitboard)
+     * @param player Sign of the player in question
+     * @return Key for the given state (state handle of the Q-table, see TicTacToe_QTable)
+     */
+    protected int getState(int board, char player)
+    {
+        return Q.state(board,player);
     } 
 
     @Override
@@ -287,6 +332,10 @@ public class QLearning extends TicTacToe_Agent
         }else {
             if(random.nextDouble()<EPSILON) { 
                 // exploration
+                if (TicTacToe_Env.bitboard()){
+                    int free = TicTacToe_Bitboard.free(TicTacToe_Bitboard.fromChars(board));
+                    return TicTacToe_Bitboard.nthField(free,random.nextInt(Integer.bitCount(free)));
+                }
                 ArrayList <Integer> A = coursesOfAction(board);
                 return A.get(random.nextInt(A.size())); 
             } else {
@@ -305,26 +354,14 @@ public class QLearning extends TicTacToe_Agent
      */
     protected int getActionWithMaxQ(int stateKey) 
     { 
-        if (env.ACTIONVALUES_TO_CONSOLE) calculateBoardFromStateKey(stateKey);
-        double maxQValue = -9999.0; 
-        int bestAction = -1; 
-        ArrayList <Integer> lstW = new <Integer> ArrayList();
-        ArrayList <Integer> lstA = new <Integer> ArrayList();
-        Map<Integer, Double> vals = Q.get(stateKey); 
-        for(Map.Entry<Integer, Double> entry : vals.entrySet()) { 
-            lstW.add((int)Math.round(entry.getValue()));
-            lstA.add(entry.getKey());
-            if(entry.getValue() > maxQValue) { 
-                maxQValue = entry.getValue(); 
-                bestAction = entry.getKey(); 
-            }   
-        } 
+        int bestAction = Q.best(stateKey); 
         if (env.ACTIONVALUES_TO_CONSOLE) System.out.println("action values by "+ident);
         if ((env.ACTIONVALUES_TO_CONSOLE)||(env.DISPLAY_ACTIONVALUES)) {
-            calculateBoardFromStateKey(stateKey);
-            for (int i=0;i<lstA.size();i++) {
-                if (env.DISPLAY_ACTIONVALUES) env.showText(""+lstW.get(i),lstA.get(i)%3,lstA.get(i)/3);
-                if (env.ACTIONVALUES_TO_CONSOLE) System.out.println("Q(s,"+lstA.get(i)+") = "+lstW.get(i));
+            for (int f=Q.actions(stateKey);f!=0;f&=f-1) {
+                int a = Integer.numberOfTrailingZeros(f);
+                long w = Math.round(Q.get(stateKey,a));
+                if (env.DISPLAY_ACTIONVALUES) env.showText(""+w,a%3,a/3);
+                if (env.ACTIONVALUES_TO_CONSOLE) System.out.println("Q(s,"+a+") = "+w);
             }
         }
         return bestAction; 
@@ -335,20 +372,9 @@ public class QLearning extends TicTacToe_Agent
      * @param s state key
      * @return Largest Q value present.
      */
-    public Double maxQ(int s) 
+    public double maxQ(int s) 
     { 
-        double maxQValue = Double.NEGATIVE_INFINITY; 
-        Map<Integer, Double> vals = Q.get(s); 
-        if (vals!=null) {
-            for(Map.Entry<Integer, Double> entry : vals.entrySet()) { 
-                if(entry.getValue()>maxQValue) { 
-                    maxQValue = entry.getValue(); 
-                }
-            } 
-            return maxQValue;
-        }else{
-            return null;
-        }
+        return Q.max(s);
     }  
     
     /**
@@ -357,9 +383,9 @@ public class QLearning extends TicTacToe_Agent
      * @param a action
      * @param v Q-value
      */
-    protected void setQ(int s, int a, Double v) 
+    protected void setQ(int s, int a, double v) 
     { 
-        Q.get(s).put(a,v); 
+        Q.set(s,a,v); 
     } 
  
     /**
@@ -370,7 +396,7 @@ public class QLearning extends TicTacToe_Agent
      */
     protected double getQ(int s, int a) 
     { 
-        return Q.get(s).get(a); 
+        return Q.get(s,a); 
     } 
    
     /**
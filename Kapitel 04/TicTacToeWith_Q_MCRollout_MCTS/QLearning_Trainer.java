@@ -0,0 +1,267 @@
+import java.sql.Timestamp;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background training of a QLearning agent by self-play. Several worker threads play training games and update
+ * the Q-table of the agent, which they share (the Q-values are atomic cells, see TicTacToe_QTable). Meanwhile
+ * the agent can be used in the world: it plays greedily with the current Q-values.
+ *
+ * Every EVALUATION_INTERVAL training games, lengthEvaluationphase games are played greedily against the evaluation
+ * opponent of QLearning; the result is written to the console and the chart logger. The progress can be queried
+ * with getGamesPlayed and getProgress, and the training can be cancelled.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class QLearning_Trainer
+{
+    public static int EVALUATION_INTERVAL = 500; // training games between two evaluations
+    public static double EXPLORATION = 0.1;      // minimal epsilon of the workers, so that they do not all play the same games
+    private static final int MAX_MOVES = 8;      // a game ends after 8 moves, as in the training loop of QLearning
+
+    private final QLearning agent;
+    private final JfxChartLogger jfxLogger;
+    private final int workers;
+
+    private final AtomicInteger gamesStarted = new AtomicInteger();
+    private final AtomicInteger gamesPlayed = new AtomicInteger();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private volatile boolean cancelled = false;
+    private volatile int numberOfGames = 0;
+    private ExecutorService executor = null;
+
+    private TicTacToe_Agent evaluationOpponent = null;
+    private int lastEvaluation = 0;
+
+    /**
+     * Creates a trainer for a QLearning agent.
+     * @param agent agent whose Q-table is trained
+     * @param jfxLogger logger for the results of the evaluations (may be null)
+     * @param workers number of self-play workers
+     */
+    public QLearning_Trainer(QLearning agent, JfxChartLogger jfxLogger, int workers)
+    {
+        this.agent = agent;
+        this.jfxLogger = jfxLogger;
+        this.workers = Math.max(1,workers);
+    }
+
+    /**
+     * Starts the training in the background, the method returns at once.
+     * @param games number of training games
+     */
+    public synchronized void start(int games)
+    {
+        if (isRunning()) throw new IllegalStateException("QLearning_Trainer: training is already running");
+        numberOfGames = games;
+        gamesStarted.set(0);
+        gamesPlayed.set(0);
+        activeWorkers.set(workers);
+        cancelled = false;
+        lastEvaluation = 0;
+        executor = Executors.newFixedThreadPool(workers,new ThreadFactory(){
+            private int n = 0;
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r,"QLearning worker "+(n++));
+                t.setDaemon(true); // does not keep the application alive
+                return t;
+            }
+        });
+        SplittableRandom seeds = new SplittableRandom();
+        for (int w=0;w<workers;w++){
+            final SplittableRandom random = seeds.split();
+            executor.execute(new Runnable(){
+                @Override
+                public void run()
+                {
+                    work(random);
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Cancels the training, the workers stop after their current game.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Waits for the end of the training.
+     * @param millis maximum waiting time in milliseconds
+     * @return true, if the training has ended
+     */
+    public boolean awaitCompletion(long millis) throws InterruptedException
+    {
+        ExecutorService e;
+        synchronized (this){
+            e = executor;
+        }
+        return (e==null) || e.awaitTermination(millis,TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns true, while the workers are training.
+     */
+    public synchronized boolean isRunning()
+    {
+        return (executor!=null) && !executor.isTerminated();
+    }
+
+    /**
+     * Returns the number of training games played so far.
+     */
+    public int getGamesPlayed()
+    {
+        return gamesPlayed.get();
+    }
+
+    /**
+     * Returns the progress of the training between 0 and 1.
+     */
+    public double getProgress()
+    {
+        return (numberOfGames==0) ? 1.0 : Math.min(1.0,gamesPlayed.get()/(double)numberOfGames);
+    }
+
+    /**
+     * Training loop of a worker.
+     */
+    private void work(SplittableRandom random)
+    {
+        try {
+            while (!cancelled && (gamesStarted.getAndIncrement()<numberOfGames)){
+                playTrainingGame(random);
+                int played = gamesPlayed.incrementAndGet();
+                if ((played%EVALUATION_INTERVAL==0)||(played==numberOfGames)) evaluate(played);
+            }
+        } finally {
+            if (activeWorkers.decrementAndGet()==0) finished();
+        }
+    }
+
+    /**
+     * Plays a self-play game and updates the Q-values after each move (as the training loop of QLearning).
+     */
+    private void playTrainingGame(SplittableRandom random)
+    {
+        int board = TicTacToe_Bitboard.EMPTY;
+        char player = 'x';
+        int moves = 0;
+        boolean gameEnd = false;
+        do {
+            int keyState = agent.getState(board,player);
+            int a = epsilonGreedy(keyState,board,random);
+            board = TicTacToe_Bitboard.play(board,a,TicTacToe_Bitboard.playerIndex(player));
+            moves++;
+            double reward = TicTacToe_Agent.getReward(board,TicTacToe_Bitboard.playerIndex(player));
+            gameEnd = (reward!=0)||(moves>=MAX_MOVES);
+            char nextPlayer = (player=='x') ? 'o' : 'x';
+            int keyNewState = agent.getState(board,nextPlayer);
+            if (gameEnd && (reward==0)){
+                reward = (player==agent.ownSign) ? QLearning.belohnungFuerUnentschieden : -QLearning.belohnungFuerUnentschieden;
+            }
+            agent.update(keyState,a,reward,keyNewState,gameEnd);
+            player = nextPlayer;
+        } while (!gameEnd);
+    }
+
+    private int epsilonGreedy(int keyState, int board, SplittableRandom random)
+    {
+        if (random.nextDouble()<Math.max(agent.EPSILON,EXPLORATION)){
+            int free = TicTacToe_Bitboard.free(board);
+            return TicTacToe_Bitboard.nthField(free,random.nextInt(Integer.bitCount(free)));
+        }
+        return agent.Q.best(keyState);
+    }
+
+    /**
+     * Evaluation phase: greedy games of the agent against the evaluation opponent of QLearning. Only one
+     * evaluation runs at a time, the training continues meanwhile.
+     * @param played number of training games played
+     */
+    private synchronized void evaluate(int played)
+    {
+        if (played<=lastEvaluation) return; // a later evaluation was faster
+        lastEvaluation = played;
+        char ownSign = agent.ownSign;
+        char opponentSign = (ownSign=='x') ? 'o' : 'x';
+        boolean self = QLearning.algorithm_evaluationOpponent.equals("self");
+        if (!self && (evaluationOpponent==null)){
+            evaluationOpponent = agent.env.produceAgent(opponentSign,QLearning.algorithm_evaluationOpponent);
+        }
+        int won = 0, lost = 0, draw = 0;
+        for (int g=0;g<QLearning.lengthEvaluationphase;g++){
+            int board = TicTacToe_Bitboard.EMPTY;
+            char player = 'x';
+            int moves = 0;
+            while (true){
+                int a;
+                if ((player==ownSign)||self){
+                    a = agent.Q.best(agent.getState(board,player));
+                }else{
+                    a = evaluationOpponent.policy(TicTacToe_Bitboard.toChars(board),player);
+                }
+                board = TicTacToe_Bitboard.play(board,a,TicTacToe_Bitboard.playerIndex(player));
+                moves++;
+                if (TicTacToe_Bitboard.hasWon(board,TicTacToe_Bitboard.playerIndex(player))){
+                    if (player==ownSign) won++; else lost++;
+                    break;
+                }
+                if (moves>=MAX_MOVES){
+                    draw++;
+                    break;
+                }
+                player = (player=='x') ? 'o' : 'x';
+            }
+        }
+        double games = QLearning.lengthEvaluationphase;
+        String result = played+";"+won+";"+String.format("%.1f",won*100/games)+"%;"
+                       +lost+";"+String.format("%.1f",lost*100/games)+"%;"
+                       +draw+";"+String.format("%.1f",draw*100/games)+"%;"
+                       +String.format("%.1f",100*(won-lost)/games)+"%;";
+        System.out.println(result);
+        if (jfxLogger!=null){
+            jfxLogger.append(result+"\n");
+            jfxLogger.append(played,lost);
+        }
+    }
+
+    /**
+     * Called by the last worker that ends.
+     */
+    private synchronized void finished()
+    {
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+        String end = (cancelled ? "training cancelled:;" : "training end:;")+timestamp;
+        System.out.println(end);
+        if (jfxLogger!=null){
+            jfxLogger.appendln(end);
+            jfxLogger.save(false);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs a number of rollouts after an action on a ForkJoinPool. The rollouts are split into blocks that the
+ * threads of the pool process with their own rollout engines (see TicTacToe_Rollout). The task returns the sum
+ * of the results.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class RolloutTask extends RecursiveTask<Double>
+{
+    private static final long serialVersionUID = 1L;
+
+    public static int MIN_BLOCK_SIZE = 256; // rollouts per block, smaller blocks are not split any further
+
+    private final int board;
+    private final int action;
+    private final int player;
+    private final int rollouts;
+
+    /**
+     * Creates a task for a number of rollouts.
+     * @param board bitboard before the action
+     * @param action field of the action
+     * @param player player index of the active player (TicTacToe_Bitboard.X or O)
+     * @param rollouts number of rollouts
+     */
+    public RolloutTask(int board, int action, int player, int rollouts)
+    {
+        this.board = board;
+        this.action = action;
+        this.player = player;
+        this.rollouts = rollouts;
+    }
+
+    @Override
+    protected Double compute()
+    {
+        if (rollouts>MIN_BLOCK_SIZE){
+            int half = rollouts>>>1;
+            RolloutTask upper = new RolloutTask(board,action,player,rollouts-half);
+            upper.fork();
+            double sum = new RolloutTask(board,action,player,half).compute();
+            return sum+upper.join();
+        }
+        return TicTacToe_Rollout.get().evaluate(board,action,player,rollouts);
+    }
+}
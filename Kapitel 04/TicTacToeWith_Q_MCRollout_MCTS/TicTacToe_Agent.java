@@ -29,7 +29,7 @@ public abstract class TicTacToe_Agent
     protected TicTacToe_Env env = null;
     
     protected char ownSign = 'o';
-    protected char[] state = new char[9];
+    protected char[] state = new char[TicTacToe_Env.fields()];
       
     public TicTacToe_Agent(char player, TicTacToe_Env env, String ident)
     {
@@ -55,7 +55,7 @@ public abstract class TicTacToe_Agent
     public static ArrayList <Integer> coursesOfAction(char[] board)
     {
         ArrayList <Integer> A_s = new ArrayList<Integer> ();
-        for (int i=0;i<9;i++){
+        for (int i=0;i<board.length;i++){
             if (board[i]=='-'){
                 A_s.add(i);
             }
@@ -95,12 +95,42 @@ public abstract class TicTacToe_Agent
      */
     public double getReward(char[] state, char player)
     {
+        if (TicTacToe_Env.bitboard()) return getReward(TicTacToe_Bitboard.fromChars(state),TicTacToe_Bitboard.playerIndex(player));
         char opponent = (player=='x') ? 'o' : 'x';
         if ( TicTacToe_Env.checkMatrixWon(state)==player) return TicTacToe_Env.REWARD_WIN;
         if ( TicTacToe_Env.checkMatrixWon(state)==opponent) return -TicTacToe_Env.REWARD_WIN;
         return 0;
     }
-    
+
+    /**
+     * Checks, if the last move generates a reward for given player. Only the lines through the field of the
+     * move are checked (see TicTacToe_Env.checkMatrixWon(char[],int)).
+     * @param state board after the move
+     * @param action field of the last move
+     * @param player Player for which the state is checked.
+     * @return reward
+     */
+    public double getReward(char[] state, int action, char player)
+    {
+        char winner = TicTacToe_Env.checkMatrixWon(state,action);
+        if (winner==player) return TicTacToe_Env.REWARD_WIN;
+        if (winner!='-') return -TicTacToe_Env.REWARD_WIN;
+        return 0;
+    }
+
+    /**
+     * Checks, if a bitboard generates a reward for given player.
+     * @param board bitboard (see TicTacToe_Bitboard)
+     * @param player player index (TicTacToe_Bitboard.X or O)
+     * @return reward
+     */
+    public static double getReward(int board, int player)
+    {
+        if (TicTacToe_Bitboard.hasWon(board,player)) return TicTacToe_Env.REWARD_WIN;
+        if (TicTacToe_Bitboard.hasWon(board,1-player)) return -TicTacToe_Env.REWARD_WIN;
+        return 0;
+    }
+
     /**
      * GreedyPolicy: Returns an action with the best rating for the given state.
      * @param state Represents the state of the board.
@@ -148,7 +178,7 @@ public abstract class TicTacToe_Agent
         if ((TicTacToe_Env.ACTIONVALUES_TO_CONSOLE)||(env.DISPLAY_ACTIONVALUES)) 
         {
             for (int i=0;i<A_s.size();i++) {
-                if (TicTacToe_Env.DISPLAY_ACTIONVALUES) env.showText(""+lstW.get(i),A_s.get(i)%3,A_s.get(i)/3);
+                if (TicTacToe_Env.DISPLAY_ACTIONVALUES) env.showText(""+lstW.get(i),A_s.get(i)%TicTacToe_Env.COLUMNS,A_s.get(i)/TicTacToe_Env.COLUMNS);
                 if (TicTacToe_Env.ACTIONVALUES_TO_CONSOLE) System.out.println("Q(s,"+A_s.get(i)+") = "+lstW.get(i));
             }
         }
@@ -0,0 +1,266 @@
+/**
+ * Bitboard representation of the TicTacToe board. A board is a single int: bits 0..8 hold the fields of 'x',
+ * bits 9..17 the fields of 'o' (field a = 3*row+column as in the char[] boards). Boards are values, so a
+ * "copy" of a board costs nothing and no objects are created during search and rollouts.
+ *
+ * Wins are tested with a table over all 512 masks of a player, the number of open fields is a popcount and
+ * the free fields can be iterated without allocation:
+ *
+ *   for (int f=TicTacToe_Bitboard.free(board); f!=0; f&=f-1){
+ *       int a = Integer.numberOfTrailingZeros(f);
+ *       ...
+ *   }
+ *
+ * The adapters fromChars/toChars convert between bitboards and the char[] boards of the Greenfoot display.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public final class TicTacToe_Bitboard
+{
+    public static final int EMPTY = 0;
+    public static final int FIELDS = 0x1FF; // mask of the 9 fields
+    public static final int X = 0;          // player index of 'x'
+    public static final int O = 1;          // player index of 'o'
+
+    public static final int[] WIN_MASKS = new int[TicTacToe_Env.winCaseList.length];
+    private static final boolean[] WON = new boolean[512];   // mask contains a line
+    private static final int[] TERNARY = new int[512];       // sum of 3^a over the fields of a mask
+
+    // the 8 symmetries of the square: SYMMETRIES[s][a] is the field onto which s maps field a
+    // (identity, rotations by 90, 180 and 270 degrees, reflections at the vertical and horizontal axis and at both diagonals)
+    public static final int[][] SYMMETRIES = new int[8][9];
+    private static final int[][] PERMUTED = new int[8][512]; // 9-bit mask after a symmetry
+
+    static {
+        for (int i=0;i<WIN_MASKS.length;i++){
+            for (char a : TicTacToe_Env.winCaseList[i]) WIN_MASKS[i] |= 1<<a;
+        }
+        for (int m=0;m<512;m++){
+            for (int w : WIN_MASKS) if ((m&w)==w) WON[m]=true;
+            int p=1;
+            for (int a=0;a<9;a++){
+                if ((m&(1<<a))!=0) TERNARY[m]+=p;
+                p*=3;
+            }
+        }
+        for (int a=0;a<9;a++){
+            int r=a/3, c=a%3;
+            SYMMETRIES[0][a]=3*r+c;
+            SYMMETRIES[1][a]=3*c+(2-r);
+            SYMMETRIES[2][a]=3*(2-r)+(2-c);
+            SYMMETRIES[3][a]=3*(2-c)+r;
+            SYMMETRIES[4][a]=3*r+(2-c);
+            SYMMETRIES[5][a]=3*(2-r)+c;
+            SYMMETRIES[6][a]=3*c+r;
+            SYMMETRIES[7][a]=3*(2-c)+(2-r);
+        }
+        for (int s=0;s<8;s++){
+            for (int m=0;m<512;m++){
+                for (int a=0;a<9;a++) if ((m&(1<<a))!=0) PERMUTED[s][m] |= 1<<SYMMETRIES[s][a];
+            }
+        }
+    }
+
+    private TicTacToe_Bitboard()
+    {
+    }
+
+    /**
+     * Fields of a player.
+     * @param board bitboard
+     * @param player player index (X or O)
+     * @return 9-bit mask
+     */
+    public static int mask(int board, int player)
+    {
+        return (board>>>(9*player))&FIELDS;
+    }
+
+    /**
+     * Free fields of the board.
+     * @param board bitboard
+     * @return 9-bit mask
+     */
+    public static int free(int board)
+    {
+        return ~(board|(board>>>9))&FIELDS;
+    }
+
+    /**
+     * Number of open fields.
+     * @param board bitboard
+     * @return number of free fields
+     */
+    public static int countOpenFields(int board)
+    {
+        return Integer.bitCount(free(board));
+    }
+
+    /**
+     * Board after a move.
+     * @param board bitboard
+     * @param a field (0..8)
+     * @param player player index (X or O)
+     * @return new bitboard
+     */
+    public static int play(int board, int a, int player)
+    {
+        return board|(1<<(a+9*player));
+    }
+
+    /**
+     * Tests whether a player has completed a line.
+     * @param board bitboard
+     * @param player player index (X or O)
+     * @return true, if the player has won
+     */
+    public static boolean hasWon(int board, int player)
+    {
+        return WON[mask(board,player)];
+    }
+
+    /**
+     * Winner of the board (as TicTacToe_Env.checkMatrixWon).
+     * @param board bitboard
+     * @return 'x', 'o' or '-'
+     */
+    public static char winner(int board)
+    {
+        if (WON[board&FIELDS]) return 'x';
+        if (WON[(board>>>9)&FIELDS]) return 'o';
+        return '-';
+    }
+
+    /**
+     * Returns the n-th free field (n=0 is the lowest).
+     * @param free mask of the free fields
+     * @param n index among the free fields
+     * @return field
+     */
+    public static int nthField(int free, int n)
+    {
+        for (int i=0;i<n;i++) free&=free-1;
+        return Integer.numberOfTrailingZeros(free);
+    }
+
+    /**
+     * Player index of a sign.
+     * @param c 'x' or 'o'
+     * @return X or O
+     */
+    public static int playerIndex(char c)
+    {
+        return (c=='x') ? X : O;
+    }
+
+    /**
+     * Sign of a player index.
+     * @param player X or O
+     * @return 'x' or 'o'
+     */
+    public static char sign(int player)
+    {
+        return (player==X) ? 'x' : 'o';
+    }
+
+    /**
+     * Converts a char[] board into a bitboard.
+     * @param board board state ('x','o','-')
+     * @return bitboard
+     */
+    public static int fromChars(char[] board)
+    {
+        int b = EMPTY;
+        for (int a=0;a<9;a++){
+            if (board[a]=='x') b|=1<<a;
+            else if (board[a]=='o') b|=1<<(a+9);
+        }
+        return b;
+    }
+
+    /**
+     * Writes a bitboard into a char[] board.
+     * @param board bitboard
+     * @param target board state ('x','o','-') of length 9
+     */
+    public static void toChars(int board, char[] target)
+    {
+        for (int a=0;a<9;a++){
+            if ((board&(1<<a))!=0) target[a]='x';
+            else if ((board&(1<<(a+9)))!=0) target[a]='o';
+            else target[a]='-';
+        }
+    }
+
+    /**
+     * Converts a bitboard into a new char[] board.
+     * @param board bitboard
+     * @return board state ('x','o','-')
+     */
+    public static char[] toChars(int board)
+    {
+        char[] target = new char[9];
+        toChars(board,target);
+        return target;
+    }
+
+    /**
+     * Applies a symmetry of the square to a board.
+     * @param board bitboard
+     * @param symmetry index of the symmetry (see SYMMETRIES)
+     * @return mapped bitboard
+     */
+    public static int symmetry(int board, int symmetry)
+    {
+        return PERMUTED[symmetry][board&FIELDS]|(PERMUTED[symmetry][(board>>>9)&FIELDS]<<9);
+    }
+
+    /**
+     * Determines the symmetry that maps a board onto its canonical form, the smallest of the 8 mapped bitboards.
+     * Boards that can be transformed into each other by rotation or reflection have the same canonical form.
+     * @param board bitboard
+     * @return index of the symmetry (see SYMMETRIES)
+     */
+    public static int canonicalSymmetry(int board)
+    {
+        int best = 0, min = board;
+        for (int s=1;s<8;s++){
+            int b = symmetry(board,s);
+            if (b<min){
+                min = b;
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * State key in the ternary system, same as QLearning.calculateStateKey ('x'=0, 'o'=1, '-'=2, player as
+     * tenth digit).
+     * @param board bitboard
+     * @param player player associated
+     * @return state key
+     */
+    public static int stateKey(int board, char player)
+    {
+        int x = mask(board,X);
+        int o = mask(board,O);
+        int digit = (player=='x') ? 0 : ((player=='o') ? 1 : 2);
+        return 2*TERNARY[FIELDS]-2*TERNARY[x]-TERNARY[o]+19683*digit;
+    }
+}
@@ -26,9 +26,15 @@ public class TicTacToe_Env extends World
     // ----- settings -----
     /* algorithms
      - "MCTS" 
+     - "MCTS root parallel"
+     - "MCTS tree parallel"
+     - "MCTS RAVE"
+     - "MCGS"
      - "Monte-Carlo Rollout"
      - "Q-Learning"
      - "NegaMax"
+     - "AlphaBeta NegaMax"
+     - "Perfect Play"
      - "Arbitrary" 
     */
     public final static String x_player = "NegaMax";  // algorithm for X
@@ -38,23 +44,29 @@ public class TicTacToe_Env extends World
     public static boolean BOARDSTATE_TO_CONSOLE = true;
     public static boolean ACTIONVALUES_TO_CONSOLE = true;
     public static boolean DISPLAY_ACTIONVALUES = true;
-    
+    public static boolean BITBOARD = true; // agents search and play out on bitboards (see TicTacToe_Bitboard), only 3x3
+
+    // m,n,k-game: board with COLUMNS x ROWS fields, WIN_LENGTH stones in a row win (e.g. 7,7,4 or Gomoku 15,15,5).
+    // Other than 3,3,3 only the agents "MCTS", "Monte-Carlo Rollout", "NegaMax" and "Arbitrary" are available.
+    public static int COLUMNS = 3;
+    public static int ROWS = 3;
+    public static int WIN_LENGTH = 3;
+    public static int TOURNAMENT_THREADS = Runtime.getRuntime().availableProcessors(); // workers of agentComparison, 1 = games one after another
+
     protected JfxChartLogger jfxLogger = null;
     protected String logFilePath = "data\\";
                      
     // start state:
-    protected char[] startState = {'-','-','-',
-                                   '-','-','-',
-                                   '-','-','-'};
+    protected char[] startState = emptyBoard();
                                    
     protected char[] matrix = startState.clone();
                                    
     // Array with two TicTacToe_agents, zero for human player                                  
     protected TicTacToe_Agent[] ttt_Agents = new TicTacToe_Agent[2];
                                
-    protected TicTacToe_Field[] tttFields = new TicTacToe_Field[9];  
+    protected TicTacToe_Field[] tttFields = new TicTacToe_Field[fields()];  
     protected static int REWARD_WIN = 100;
-    public static final char winCaseList[][] =
+    public static final char winCaseList[][] = // lines of the 3x3 board
          {
                 {2,4,6},
                 {0,4,8},
@@ -72,8 +84,12 @@ public class TicTacToe_Env extends World
 
     public TicTacToe_Env()
     {
-        super(3, 3, 150); 
-        this.setBackground("tictactoespielfeld.png");
+        super(COLUMNS, ROWS, cellSize()); 
+        if (isTicTacToe()){
+            this.setBackground("tictactoespielfeld.png");
+        }else{
+            drawGrid();
+        }
         prepare();
         
         ttt_Agents[0] = produceAgent('x',x_player);
@@ -83,16 +99,39 @@ public class TicTacToe_Env extends World
     /**
      * Generates a TicTacToe agent.
      * available algorithms:
-     * "MCTS", "Monte-Carlo Rollout", "Q-Learning", "NegaMax", "Arbitrary" 
+     * "MCTS", "MCTS root parallel", "MCTS tree parallel", "MCTS RAVE", "MCGS", "Monte-Carlo Rollout", "Q-Learning", "NegaMax", "AlphaBeta NegaMax", "Perfect Play", "Arbitrary" 
      * 
      * @param player Symbol of the player
      * @param ident Name of the algorithm used  
      */
     public TicTacToe_Agent produceAgent(char player, String ident)
     {
+        if (!isTicTacToe() && !(ident.equals("MCTS")||ident.equals("Monte-Carlo Rollout")||ident.equals("NegaMax")||ident.equals("Arbitrary")))
+        {
+            System.out.println("'"+ident+"' is only available for 3x3 TicTacToe, "+player+" is played by a human.");
+            return null;
+        }
         if (ident.equals("MCTS"))
         {
             return new MCTS(player,this,ident,1000); // Zeitlimit
+        }else if (ident.equals("MCTS root parallel"))
+        {
+            MCTS mcts = new MCTS(player,this,ident,1000);
+            mcts.setParallelMode(MCTS.ROOT_PARALLEL);
+            return mcts;
+        }else if (ident.equals("MCTS tree parallel"))
+        {
+            MCTS mcts = new MCTS(player,this,ident,1000);
+            mcts.setParallelMode(MCTS.TREE_PARALLEL);
+            return mcts;
+        }else if (ident.equals("MCTS RAVE"))
+        {
+            MCTS mcts = new MCTS(player,this,ident,1000);
+            mcts.setRave(MCTS.RAVE_EQUIVALENCE);
+            return mcts;
+        }else if (ident.equals("MCGS"))
+        {
+            return new MCGS(player,this,ident,1000);
         }else if (ident.equals("Monte-Carlo Rollout"))
         {
             return new MonteCarlo_Rollout(player, this, ident);
@@ -103,6 +142,12 @@ public class TicTacToe_Env extends World
         }else if (ident.equals("NegaMax"))
         {
             return new NegaMax(player,this,ident);
+        }else if (ident.equals("AlphaBeta NegaMax"))
+        {
+            return new AlphaBetaNegaMax(player,this,ident);
+        }else if (ident.equals("Perfect Play"))
+        {
+            return new PerfectPlay(player,this,ident);
         }else if (ident.equals("Arbitrary"))
         {
             return new Arbitrary(player,this,ident);
@@ -116,9 +161,22 @@ public class TicTacToe_Env extends World
         for (int i=0;i<tttFields.length;i++) {
              TicTacToe_Field tttField = new TicTacToe_Field();
              tttField.setOccupancy(matrix[i]);
-             addObject(tttField,i%3,i/3);
+             addObject(tttField,i%COLUMNS,i/COLUMNS);
         }
     }
+
+    /**
+     * Draws the lines of an m,n,k board as background.
+     */
+    private void drawGrid() {
+        GreenfootImage background = new GreenfootImage(COLUMNS*cellSize(),ROWS*cellSize());
+        background.setColor(Color.WHITE);
+        background.fill();
+        background.setColor(Color.BLACK);
+        for (int x=1;x<COLUMNS;x++) background.drawLine(x*cellSize(),0,x*cellSize(),ROWS*cellSize());
+        for (int y=1;y<ROWS;y++) background.drawLine(0,y*cellSize(),COLUMNS*cellSize(),y*cellSize());
+        setBackground(background);
+    }
     
     /**
      * This initializes the data logger depending on selected agent class.
@@ -165,11 +223,11 @@ public class TicTacToe_Env extends World
         if (ttt_Agents[playerNum(player)]==null) 
         {   // human player  
             if ((mouse!=null)&&(mouse.getClickCount())>0){
-                move(3*y+x,player);
+                move(COLUMNS*y+x,player);
             }
         }else
         {   // AI move
-            if (cnt_steps<9) {
+            if (cnt_steps<fields()) {
                 int a = ttt_Agents[playerNum(player)].policy(matrix);
                 move(a,player);
             }else{
@@ -194,24 +252,35 @@ public class TicTacToe_Env extends World
         
         ttt_Agents[0] = produceAgent('x',x_player);
         ttt_Agents[1] = produceAgent('o',o_player);
+        for (TicTacToe_Agent agent : ttt_Agents){
+            if (agent instanceof QLearning) ((QLearning)agent).awaitTraining(); // play with the trained Q-table
+        }
         
         ACTIONVALUES_TO_CONSOLE=false;
         initCompareJfxLogger(games, parameterMin, parameterMax, parameterStep,countedPlayer); 
         
         System.out.println("rollouts; games; x-won; o-won; draw; winning rate");
-        for (int n=parameterMin;n<=parameterMax;n+=parameterStep)
-        {  
-            if (ttt_Agents[playerNum(notCounted)] instanceof MonteCarlo_Rollout){
-                ((MonteCarlo_Rollout)ttt_Agents[playerNum(notCounted)]).setMaxRollouts(n); // The rollout algorithm has the role of an ever-improving "opponent".
-            }
-            
-            if (ttt_Agents[playerNum(countedPlayer)] instanceof MonteCarlo_Rollout){
-                ((MonteCarlo_Rollout)ttt_Agents[playerNum(countedPlayer)]).setMaxRollouts(n); // The rollout algorithm has the role of an ever-improving "opponent".
+        if (TOURNAMENT_THREADS>1){
+            // parameter steps and games concurrently, each worker with its own pair of agents
+            boolean backup_ds = DISPLAY_ACTIONVALUES;
+            DISPLAY_ACTIONVALUES=false;
+            new TicTacToe_Tournament(this,x_player,o_player,ttt_Agents,TOURNAMENT_THREADS).run(games,parameterMin,parameterMax,parameterStep,countedPlayer,jfxLogger);
+            DISPLAY_ACTIONVALUES=backup_ds;
+        }else{
+            for (int n=parameterMin;n<=parameterMax;n+=parameterStep)
+            {  
+                if (ttt_Agents[playerNum(notCounted)] instanceof MonteCarlo_Rollout){
+                    ((MonteCarlo_Rollout)ttt_Agents[playerNum(notCounted)]).setMaxRollouts(n); // The rollout algorithm has the role of an ever-improving "opponent".
+                }
+                
+                if (ttt_Agents[playerNum(countedPlayer)] instanceof MonteCarlo_Rollout){
+                    ((MonteCarlo_Rollout)ttt_Agents[playerNum(countedPlayer)]).setMaxRollouts(n); // The rollout algorithm has the role of an ever-improving "opponent".
+                }
+                 
+                System.out.print(n+"; ");
+                int won = comparisonWonLost(games,playerNum(countedPlayer),startState);
+                jfxLogger.append(n,won);
             }
-             
-            System.out.print(n+"; ");
-            int won = comparisonWonLost(games,playerNum(countedPlayer),startState);
-            jfxLogger.append(n,won);
         }
         if (jfxLogger!=null) {
             jfxLogger.save(true);
@@ -244,13 +313,13 @@ public class TicTacToe_Env extends World
             player='x';
             while (!spielende){
                 int a = ttt_Agents[playerNum(player)].policy(matrix);
-                if (((a>=0)&&(a<=8))&&(matrix[a]=='-')){
+                if (((a>=0)&&(a<matrix.length))&&(matrix[a]=='-')){
                     matrix[a]=player;
                 }else{
                     System.out.println("Error! Action "+a+" is not possible!");
                 }
                 
-                if (checkMatrixWon(matrix)==player){
+                if (checkMatrixWon(matrix,a)==player){
                     cnt_won[playerNum(player)]++;
                     spielende=true;
                 } else if (countOpenFields(matrix)==0) {
@@ -295,12 +364,12 @@ public class TicTacToe_Env extends World
             player='x';
             while (!gameEnd){
                 int a = ttt_Agents[playerNum(player)].policy(matrix);
-                if (((a>=0)&&(a<=8))&&(matrix[a]=='-')){
+                if (((a>=0)&&(a<matrix.length))&&(matrix[a]=='-')){
                     matrix[a]=player;
                 }else{
                     System.out.println("Error! Action "+a+" is not possible!");
                 }                
-                if (checkMatrixWon(matrix)==player){
+                if (checkMatrixWon(matrix,a)==player){
                     cnt_won[playerNum(player)]++;
                     gameEnd=true;
                 } else if (countOpenFields(matrix)==0) {
@@ -329,7 +398,7 @@ public class TicTacToe_Env extends World
             System.out.println("Player "+player+" has already won!");
             Greenfoot.stop();
             return false;
-        }else if (cnt_steps>=9) {
+        }else if (cnt_steps>=fields()) {
             System.out.println("Board state is a draw!");
             Greenfoot.stop();
             return false;
@@ -339,11 +408,11 @@ public class TicTacToe_Env extends World
             String playertyp = (c=='x') ? x_player : o_player;
             System.out.println("----- move "+cnt_steps+": player:'"+c+"'("+playertyp+") action="+a+" ------");
         }
-        if ((a<0) || (a>matrix.length)){
+        if ((a<0) || (a>=matrix.length)){
             System.out.println("TicTacToe_Env.move("+a+","+c+") : Error! Action "+a+" is not possible.");
             return false;
         }
-        List l = this.getObjectsAt(a%3,a/3,TicTacToe_Field.class);       
+        List l = this.getObjectsAt(a%COLUMNS,a/COLUMNS,TicTacToe_Field.class);       
         if (l!=null)
         {
            TicTacToe_Field tttFeld = (TicTacToe_Field)l.get(0);
@@ -361,12 +430,12 @@ public class TicTacToe_Env extends World
             System.out.println(matrixToString(matrix));
         }
         
-        if (checkMatrixWon(matrix)==player)
+        if (checkMatrixWon(matrix,a)==player)
         {
             System.out.println("Player "+player+" has won!");
             Greenfoot.stop();
             return true;
-        }else if (cnt_steps>=9) {
+        }else if (cnt_steps>=fields()) {
             System.out.println("Draw!");
             Greenfoot.stop();
             return true;
@@ -381,18 +450,72 @@ public class TicTacToe_Env extends World
     
     public static char checkMatrixWon(char[] tttBoard)
     {
-        for (int i=0;i<winCaseList.length;i++)
+        if (bitboard()) return TicTacToe_Bitboard.winner(TicTacToe_Bitboard.fromChars(tttBoard));
+        if (isTicTacToe()){
+            for (int i=0;i<winCaseList.length;i++)
+            {
+                char z = checkMatrixLine(tttBoard, i);
+                if ((z=='x')||(z=='o')) return z;
+            }
+            return '-';
+        }
+        for (int a=0;a<tttBoard.length;a++)
         {
-            char z = checkMatrixLine(tttBoard, i);
-            if ((z=='x')||(z=='o')) return z;
+            if (isWinningMove(tttBoard,a)) return tttBoard[a];
         }
         return '-';
     }
+
+    /**
+     * Checks whether the last move has won. Only the lines through the field of the move are counted, so the
+     * effort does not depend on the size of the board.
+     * @param tttBoard board after the move
+     * @param lastMove field of the last move (no field, e.g. -1: the whole board is checked)
+     * @return sign of the winner or '-'
+     */
+    public static char checkMatrixWon(char[] tttBoard, int lastMove)
+    {
+        if ((lastMove<0)||(lastMove>=tttBoard.length)) return checkMatrixWon(tttBoard);
+        if (bitboard()) return TicTacToe_Bitboard.winner(TicTacToe_Bitboard.fromChars(tttBoard));
+        return isWinningMove(tttBoard,lastMove) ? tttBoard[lastMove] : '-';
+    }
+
+    /**
+     * Checks whether the stone on a field is part of WIN_LENGTH stones in a row (horizontal, vertical or diagonal).
+     * @param tttBoard board
+     * @param a field
+     * @return true, if the stone on the field is part of a winning line
+     */
+    public static boolean isWinningMove(char[] tttBoard, int a)
+    {
+        char c = tttBoard[a];
+        if (c=='-') return false;
+        int x = a%COLUMNS, y = a/COLUMNS;
+        if (1+countInRow(tttBoard,c,x,y,1,0)+countInRow(tttBoard,c,x,y,-1,0)>=WIN_LENGTH) return true;
+        if (1+countInRow(tttBoard,c,x,y,0,1)+countInRow(tttBoard,c,x,y,0,-1)>=WIN_LENGTH) return true;
+        if (1+countInRow(tttBoard,c,x,y,1,1)+countInRow(tttBoard,c,x,y,-1,-1)>=WIN_LENGTH) return true;
+        return 1+countInRow(tttBoard,c,x,y,1,-1)+countInRow(tttBoard,c,x,y,-1,1)>=WIN_LENGTH;
+    }
+
+    /**
+     * Counts the stones of a player next to a field in one direction (at most WIN_LENGTH-1).
+     */
+    private static int countInRow(char[] tttBoard, char c, int x, int y, int dx, int dy)
+    {
+        int n = 0;
+        x+=dx; y+=dy;
+        while ((n<WIN_LENGTH-1)&&(x>=0)&&(x<COLUMNS)&&(y>=0)&&(y<ROWS)&&(tttBoard[y*COLUMNS+x]==c)){
+            n++;
+            x+=dx; y+=dy;
+        }
+        return n;
+    }
     
     public static int countOpenFields(char[] tttBoard)
     {
+        if (bitboard()) return TicTacToe_Bitboard.countOpenFields(TicTacToe_Bitboard.fromChars(tttBoard));
         int num = 0;
-        for (int i=0;i<9;i++) {
+        for (int i=0;i<tttBoard.length;i++) {
             if (tttBoard[i]=='-'){
                 num++;
             }
@@ -410,17 +533,59 @@ public class TicTacToe_Env extends World
     public static String matrixToString(char[] sfmatrix)
     {
         String ret ="";
-        for (int i=0; i<3; i++)
+        for (int i=0; i<ROWS; i++)
         {
-            for (int j=0;j<3; j++)
+            for (int j=0;j<COLUMNS; j++)
             {
-                ret+=sfmatrix[i*3+j]; 
+                ret+=sfmatrix[i*COLUMNS+j]; 
             }
             ret+='\n';
         }
         return ret;
     }
     
+    /**
+     * Number of fields of the board.
+     */
+    public static int fields()
+    {
+        return COLUMNS*ROWS;
+    }
+
+    /**
+     * Returns true for the 3x3 board with three in a row.
+     */
+    public static boolean isTicTacToe()
+    {
+        return (COLUMNS==3)&&(ROWS==3)&&(WIN_LENGTH==3);
+    }
+
+    /**
+     * Returns true, if the agents use bitboards (setting BITBOARD, only for 3x3 TicTacToe).
+     */
+    public static boolean bitboard()
+    {
+        return BITBOARD&&isTicTacToe();
+    }
+
+    /**
+     * Edge length of a field in pixels, 150 for 3x3.
+     */
+    public static int cellSize()
+    {
+        return Math.max(30,450/Math.max(COLUMNS,ROWS));
+    }
+
+    /**
+     * Returns an empty board.
+     */
+    public static char[] emptyBoard()
+    {
+        char[] board = new char[fields()];
+        Arrays.fill(board,'-');
+        return board;
+    }
+    
     private int playerNum(char c)
     {
         return (c=='x') ? 0 : 1;
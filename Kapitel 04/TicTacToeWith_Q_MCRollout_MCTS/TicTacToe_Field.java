@@ -28,19 +28,30 @@ public class TicTacToe_Field extends Actor
     public TicTacToe_Field()
     {
         super();
-        setImage("leer.png");
+        setImage(image("leer.png"));
     } 
     
     public void setOccupancy(char c)
     {
         this.occupancy = c;
         if (c=='-'){
-            this.setImage("leer.png");
+            this.setImage(image("leer.png"));
         }
         else{
-            this.setImage(c+".png");
+            this.setImage(image(c+".png"));
         }
     }
+
+    /**
+     * Loads an image in the field size of the environment.
+     */
+    private static GreenfootImage image(String file)
+    {
+        GreenfootImage image = new GreenfootImage(file);
+        int size = TicTacToe_Env.cellSize();
+        if (image.getWidth()!=size) image.scale(size,size);
+        return image;
+    }
     
     public char getOccupancy()
     {
@@ -0,0 +1,231 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Q-table for TicTacToe in primitive arrays. The rows of the states are found over the ternary state key
+ * (as QLearning.calculateStateKey) in an index array and have 9 entries, one per field, so reading and writing
+ * a Q-value needs neither hashing nor boxing.
+ *
+ * Optionally, the boards are reduced by the 8 symmetries of the square: positions that result from each other by
+ * rotation or reflection share one row, that of their canonical form (see TicTacToe_Bitboard.canonicalSymmetry).
+ * A state handle therefore contains the row and the symmetry that maps the actual board onto the canonical one;
+ * the actions are mapped with it, so the callers always work with the fields of the actual board. A canonical
+ * board can be symmetric itself (e.g. the empty board or a single mark in the centre): then the symmetries that
+ * leave it unchanged map equivalent fields onto each other, and such fields share one cell of the row, the one
+ * with the lowest field number, so it does not matter which of them a player chooses.
+ *
+ * The table can be shared by several threads (see QLearning_Trainer): the Q-values are double bits in atomic
+ * cells that are updated with compare-and-set, the rows are stored in blocks that are never moved, and only
+ * the creation of a new row is synchronized.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class TicTacToe_QTable
+{
+    private static final int NUMBER_OF_KEYS = 59049; // 3^10 ternary state keys
+    private static final int BLOCK_ROWS = 256;       // rows per block of Q-values
+    private static final int[][] INVERSE = new int[8][9]; // INVERSE[s][c]: field that symmetry s maps onto c
+
+    static {
+        for (int s=0;s<8;s++){
+            for (int a=0;a<9;a++) INVERSE[s][TicTacToe_Bitboard.SYMMETRIES[s][a]]=a;
+        }
+    }
+
+    private final boolean symmetries;
+    private final AtomicIntegerArray rows = new AtomicIntegerArray(NUMBER_OF_KEYS); // state key -> row+1, 0 if the state has no row yet
+    private final int[] keys = new int[NUMBER_OF_KEYS]; // row -> state key
+    private final int[] free = new int[NUMBER_OF_KEYS]; // row -> free fields of the (canonical) board
+    private final byte[] cells = new byte[NUMBER_OF_KEYS*9]; // row*9+field -> cell of the field in the row
+    private final AtomicLongArray[] blocks = new AtomicLongArray[(NUMBER_OF_KEYS+BLOCK_ROWS-1)/BLOCK_ROWS];
+    private int numRows = 0;
+
+    /**
+     * Creates an empty Q-table.
+     * @param symmetries true, if boards that are equivalent under rotation or reflection share their Q-values
+     */
+    public TicTacToe_QTable(boolean symmetries)
+    {
+        this.symmetries = symmetries;
+    }
+
+    /**
+     * Returns the handle of a state, creates its row with Q-values 0 if necessary.
+     * @param board bitboard
+     * @param player Sign of the player in question
+     * @return state handle (row and symmetry)
+     */
+    public int state(int board, char player)
+    {
+        int symmetry = symmetries ? TicTacToe_Bitboard.canonicalSymmetry(board) : 0;
+        int canonical = TicTacToe_Bitboard.symmetry(board,symmetry);
+        int key = TicTacToe_Bitboard.stateKey(canonical,player);
+        int row = rows.get(key)-1;
+        if (row<0) row = createRow(key,canonical);
+        return (row<<3)|symmetry;
+    }
+
+    /**
+     * Creates the row of a state. The row is published in the index array after it is complete.
+     */
+    private synchronized int createRow(int key, int canonical)
+    {
+        int row = rows.get(key)-1;
+        if (row>=0) return row; // created by another thread
+        row = numRows++;
+        if (blocks[row/BLOCK_ROWS]==null) blocks[row/BLOCK_ROWS] = new AtomicLongArray(BLOCK_ROWS*9);
+        keys[row] = key;
+        free[row] = TicTacToe_Bitboard.free(canonical);
+        for (int c=0;c<9;c++) cells[9*row+c] = (byte)c;
+        if (symmetries){
+            for (int t=1;t<8;t++){
+                if (TicTacToe_Bitboard.symmetry(canonical,t)!=canonical) continue;
+                for (int c=0;c<9;c++){
+                    int d = TicTacToe_Bitboard.SYMMETRIES[t][c];
+                    if (d<cells[9*row+c]) cells[9*row+c] = (byte)d;
+                }
+            }
+        }
+        rows.set(key,row+1);
+        return row;
+    }
+
+    /**
+     * Gets the Q value of a given state action pair.
+     * @param s state handle
+     * @param a action (field of the actual board)
+     * @return Q-value
+     */
+    public double get(int s, int a)
+    {
+        return value(s>>>3,cell(s,a));
+    }
+
+    /**
+     * Sets a Q-value for a specific state-action pair.
+     * @param s state handle
+     * @param a action (field of the actual board)
+     * @param v Q-value
+     */
+    public void set(int s, int a, double v)
+    {
+        int row = s>>>3;
+        blocks[row/BLOCK_ROWS].set(9*(row%BLOCK_ROWS)+cell(s,a),Double.doubleToRawLongBits(v));
+    }
+
+    /**
+     * Moves a Q-value towards a target, Q(s,a) += eta*(target-Q(s,a)), as one atomic step, so that updates of
+     * several threads are not lost.
+     * @param s state handle
+     * @param a action (field of the actual board)
+     * @param target observed value
+     * @param eta step size
+     * @return new Q-value
+     */
+    public double update(int s, int a, double target, double eta)
+    {
+        int row = s>>>3;
+        AtomicLongArray block = blocks[row/BLOCK_ROWS];
+        int i = 9*(row%BLOCK_ROWS)+cell(s,a);
+        while (true){
+            long bits = block.get(i);
+            double q = Double.longBitsToDouble(bits);
+            q = q + eta * (target - q);
+            if (block.compareAndSet(i,bits,Double.doubleToRawLongBits(q))) return q;
+        }
+    }
+
+    /**
+     * Cell of an action in the row of the state: the field of the canonical board, or the lowest equivalent field
+     * if the canonical board is symmetric itself.
+     */
+    private int cell(int s, int a)
+    {
+        return cells[9*(s>>>3)+TicTacToe_Bitboard.SYMMETRIES[s&7][a]];
+    }
+
+    private double value(int row, int c)
+    {
+        return Double.longBitsToDouble(blocks[row/BLOCK_ROWS].get(9*(row%BLOCK_ROWS)+c));
+    }
+
+    /**
+     * Free fields of the actual board of a state, i.e. the possible actions.
+     * @param s state handle
+     * @return 9-bit mask
+     */
+    public int actions(int s)
+    {
+        int[] inverse = INVERSE[s&7];
+        int actions = 0;
+        for (int f=free[s>>>3];f!=0;f&=f-1) actions |= 1<<inverse[Integer.numberOfTrailingZeros(f)];
+        return actions;
+    }
+
+    /**
+     * Largest Q-value of a state.
+     * @param s state handle
+     * @return largest Q-value, 0 if the state has no actions
+     */
+    public double max(int s)
+    {
+        int row = s>>>3;
+        int f = free[row];
+        if (f==0) return 0;
+        double max = Double.NEGATIVE_INFINITY;
+        for (;f!=0;f&=f-1) max = Math.max(max,value(row,cells[9*row+Integer.numberOfTrailingZeros(f)]));
+        return max;
+    }
+
+    /**
+     * Action with the largest Q-value, for equal values the one with the lowest field number.
+     * @param s state handle
+     * @return action (field of the actual board), -1 if the state has no actions
+     */
+    public int best(int s)
+    {
+        int best = -1;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int f=actions(s);f!=0;f&=f-1){
+            int a = Integer.numberOfTrailingZeros(f);
+            double v = get(s,a);
+            if ((best<0)||(v>max)){
+                max = v;
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * State key of the (canonical) board of a state.
+     * @param s state handle
+     */
+    public int key(int s)
+    {
+        return keys[s>>>3];
+    }
+
+    /**
+     * Returns the number of stored states.
+     */
+    public synchronized int size()
+    {
+        return numRows;
+    }
+}
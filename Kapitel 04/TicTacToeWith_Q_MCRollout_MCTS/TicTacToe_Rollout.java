@@ -0,0 +1,103 @@
+import java.util.SplittableRandom;
+
+/**
+ * Iterative rollout engine for random games on bitboards. Each thread has its own engine (get()) with a fixed
+ * array of the free fields and its own SplittableRandom, so rollouts can run concurrently without locks and
+ * without allocation: a random free field is drawn from the array and removed by moving the last entry into its
+ * place ("swap-remove").
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public final class TicTacToe_Rollout
+{
+    private static final SplittableRandom seeds = new SplittableRandom();
+
+    private static final ThreadLocal<TicTacToe_Rollout> engines = new ThreadLocal<TicTacToe_Rollout>(){
+        @Override
+        protected TicTacToe_Rollout initialValue()
+        {
+            return new TicTacToe_Rollout(split());
+        }
+    };
+
+    private final int[] free = new int[9];
+    private final SplittableRandom random;
+
+    private TicTacToe_Rollout(SplittableRandom random)
+    {
+        this.random = random;
+    }
+
+    private static synchronized SplittableRandom split()
+    {
+        return seeds.split();
+    }
+
+    /**
+     * Returns the engine of the current thread.
+     */
+    public static TicTacToe_Rollout get()
+    {
+        return engines.get();
+    }
+
+    /**
+     * Plays a random game after an action. Since each field is set at most once, the final board shows all
+     * moves of the game and its result.
+     * @param board bitboard before the action
+     * @param action field of the action
+     * @param player player index of the active player (TicTacToe_Bitboard.X or O)
+     * @return bitboard at the end of the game
+     */
+    public int finalBoard(int board, int action, int player)
+    {
+        board = TicTacToe_Bitboard.play(board,action,player);
+        int n = 0;
+        for (int f=TicTacToe_Bitboard.free(board);f!=0;f&=f-1) free[n++] = Integer.numberOfTrailingZeros(f);
+        while (!TicTacToe_Bitboard.hasWon(board,player) && (n>0)){
+            int i = random.nextInt(n);
+            int a = free[i];
+            free[i] = free[--n];
+            player = 1-player;
+            board = TicTacToe_Bitboard.play(board,a,player);
+        }
+        return board;
+    }
+
+    /**
+     * Plays a random game after an action and returns its result.
+     * @param board bitboard before the action
+     * @param action field of the action
+     * @param player player index of the active player (TicTacToe_Bitboard.X or O)
+     * @return reward from the point of view of the player
+     */
+    public double evaluate(int board, int action, int player)
+    {
+        return TicTacToe_Agent.getReward(finalBoard(board,action,player),player);
+    }
+
+    /**
+     * Sum of the results of several rollouts.
+     */
+    public double evaluate(int board, int action, int player, int rollouts)
+    {
+        double sum = 0;
+        for (int i=0;i<rollouts;i++) sum += evaluate(board,action,player);
+        return sum;
+    }
+}
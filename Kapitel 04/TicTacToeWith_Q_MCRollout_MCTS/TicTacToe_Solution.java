@@ -0,0 +1,193 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Database with the game-theoretic values and best moves of all TicTacToe positions. The positions are solved
+ * offline by retrograde analysis: starting with the full boards, the positions are evaluated layer by layer with
+ * decreasing number of stones, the value of a position follows from the already known values of its successors
+ * (NegaMax over one move).
+ *
+ * The database is a binary file with one byte per ternary state key (see QLearning.calculateStateKey, the
+ * player is the one to move): bits 0-3 contain the best move (NO_MOVE at the end of the game), bits 4-5 the value
+ * for the player to move plus one (0 lost, 1 draw, 2 won). INVALID marks keys without position (boards on which
+ * both players have a line). The file is created on first use and then mapped into memory, so a query is a
+ * single read access.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class TicTacToe_Solution
+{
+    public static String DATABASE_FILE = "data"+File.separator+"tictactoe_solution.bin";
+
+    public static final int NUMBER_OF_KEYS = 59049; // 3^10 ternary state keys
+    public static final int NO_MOVE = 9;
+    public static final byte INVALID = (byte)0xFF;
+
+    private static TicTacToe_Solution database = null;
+
+    private final MappedByteBuffer entries;
+
+    private TicTacToe_Solution(MappedByteBuffer entries)
+    {
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the database of DATABASE_FILE. If the file does not exist yet, the positions are solved and the file
+     * is written.
+     */
+    public static synchronized TicTacToe_Solution get()
+    {
+        if (database==null){
+            try {
+                File file = new File(DATABASE_FILE);
+                if (!file.exists()||(file.length()!=NUMBER_OF_KEYS)){
+                    System.out.println("TicTacToe_Solution: solving positions, writing "+file);
+                    write(solve(),file);
+                }
+                database = open(file);
+            } catch (IOException e) {
+                throw new IllegalStateException("TicTacToe_Solution: database "+DATABASE_FILE+" not available",e);
+            }
+        }
+        return database;
+    }
+
+    /**
+     * Maps a database file into memory.
+     * @param file database file
+     */
+    public static TicTacToe_Solution open(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file,"r");
+        try {
+            return new TicTacToe_Solution(raf.getChannel().map(FileChannel.MapMode.READ_ONLY,0,NUMBER_OF_KEYS));
+        } finally {
+            raf.close(); // the mapping remains valid
+        }
+    }
+
+    /**
+     * Writes the entries of a database into a file.
+     * @param entries one byte per state key
+     * @param file database file
+     */
+    public static void write(byte[] entries, File file) throws IOException
+    {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir!=null) dir.mkdirs();
+        RandomAccessFile raf = new RandomAccessFile(file,"rw");
+        try {
+            raf.setLength(0);
+            raf.write(entries);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Solves all positions by retrograde analysis, for both players to move.
+     * @return one byte per state key (see class comment)
+     */
+    public static byte[] solve()
+    {
+        byte[] entries = new byte[NUMBER_OF_KEYS];
+        java.util.Arrays.fill(entries,INVALID);
+        for (int stones=9;stones>=0;stones--){
+            for (int x=0;x<512;x++){
+                if (Integer.bitCount(x)>stones) continue;
+                for (int o=0;o<512;o++){
+                    if (((x&o)!=0)||(Integer.bitCount(x)+Integer.bitCount(o)!=stones)) continue;
+                    int board = x|(o<<9);
+                    boolean xWon = TicTacToe_Bitboard.hasWon(board,TicTacToe_Bitboard.X);
+                    boolean oWon = TicTacToe_Bitboard.hasWon(board,TicTacToe_Bitboard.O);
+                    if (xWon&&oWon) continue;
+                    for (int p=TicTacToe_Bitboard.X;p<=TicTacToe_Bitboard.O;p++){
+                        int value, move = NO_MOVE;
+                        int free = TicTacToe_Bitboard.free(board);
+                        if (xWon||oWon){
+                            value = TicTacToe_Bitboard.hasWon(board,p) ? 1 : -1;
+                        }else if (free==0){
+                            value = 0;
+                        }else{
+                            value = -2;
+                            for (int f=free;f!=0;f&=f-1){
+                                int a = Integer.numberOfTrailingZeros(f);
+                                int v = -value(entries[key(TicTacToe_Bitboard.play(board,a,p),1-p)]);
+                                if (v>value){
+                                    value = v;
+                                    move = a;
+                                }
+                            }
+                        }
+                        entries[key(board,p)] = (byte)(((value+1)<<4)|move);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static int key(int board, int player)
+    {
+        return TicTacToe_Bitboard.stateKey(board,TicTacToe_Bitboard.sign(player));
+    }
+
+    private static int value(byte entry)
+    {
+        return ((entry>>4)&3)-1;
+    }
+
+    /**
+     * Game-theoretic value of a position.
+     * @param board bitboard
+     * @param player player index of the player to move (TicTacToe_Bitboard.X or O)
+     * @return 1 won, 0 draw, -1 lost for the player to move (with perfect play of both)
+     */
+    public int getValue(int board, int player)
+    {
+        return value(entries.get(key(board,player)));
+    }
+
+    /**
+     * Best move in a position.
+     * @param board bitboard
+     * @param player player index of the player to move (TicTacToe_Bitboard.X or O)
+     * @return field of the move, -1 at the end of the game
+     */
+    public int getBestMove(int board, int player)
+    {
+        int move = entries.get(key(board,player))&15;
+        return (move==NO_MOVE) ? -1 : move;
+    }
+
+    /**
+     * Game-theoretic value of an action, as NegaMax.evaluateAction.
+     * @param board bitboard before the action
+     * @param action Number of the field into which is set.
+     * @param player player index (TicTacToe_Bitboard.X or O)
+     * @return Evaluation of the action from the point of view of the player (-1, 0 or 1)
+     */
+    public int evaluateAction(int board, int action, int player)
+    {
+        return -getValue(TicTacToe_Bitboard.play(board,action,player),1-player);
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Tournament engine for the comparison of two TicTacToe agents over a parameter interval (e.g. the number of
+ * rollouts). The games of all parameter steps are divided into blocks that a pool of worker threads plays
+ * concurrently. Each worker has its own pair of agents, produced with TicTacToe_Env.produceAgent, and its own
+ * board, so the agents need not be thread-safe. Q-Learning agents are the exception: they are trained once
+ * before the tournament and then shared by all workers, which play greedily with the thread-safe Q-table. The
+ * results are counted in atomic counters per parameter step; as soon as a step and all steps before it are
+ * finished, its result is written to the console and the chart logger, so the curve grows in the order of the
+ * parameter while the tournament is running.
+ *
+ * The workers are plain threads and not those of a ForkJoinPool, so that the ForkJoin tasks of the agents
+ * (RolloutTask, parallel MCTS) run in the common pool and never interrupt a game of the tournament.
+ *
+ * Supplementary material to the book:
+ * "Reinforcement Learning From Scratch: Understanding Current Approaches - with Examples in Java and Greenfoot" by Uwe Lorenz.
+ * https://link.springer.com/book/10.1007/978-3-031-09030-1
+ *
+ * Ausgabe auf Deutsch: https://link.springer.com/book/9783662683101
+ *
+ * Licensing CC-BY-SA 4.0
+ * Attribution - Sharing under the same conditions
+ *
+ * www.facebook.com/ReinforcementLearningJava
+ * github.com/sn-code-inside/Reinforcement-Learning
+ *
+ * www.x-ai.eu
+ *
+ * @author Uwe Lorenz
+ * @version 1.3 (17.10.2026)
+ */
+public class TicTacToe_Tournament
+{
+    public static int BLOCK_SIZE = 10; // games per block, the unit of work of a worker
+
+    private final TicTacToe_Env env;
+    private final String x_player;
+    private final String o_player;
+    private final TicTacToe_Agent[] trained; // trained agents for X and O that are shared by the workers
+    private final int threads;
+
+    private final ThreadLocal<TicTacToe_Agent[]> agents = new ThreadLocal<TicTacToe_Agent[]>(){
+        @Override
+        protected TicTacToe_Agent[] initialValue()
+        {
+            return new TicTacToe_Agent[]{agent(0,'x',x_player),agent(1,'o',o_player)};
+        }
+    };
+
+    // results of the running tournament
+    private int games;
+    private int parameterMin;
+    private int parameterStep;
+    private int countedPlayer;
+    private JfxChartLogger jfxLogger;
+    private AtomicIntegerArray results;    // per step: x-won, o-won, draw
+    private AtomicIntegerArray openBlocks; // per step: blocks not yet finished
+    private int published = 0;             // number of steps already written out
+
+    /**
+     * Creates a tournament engine.
+     * @param env environment that produces the agents
+     * @param x_player algorithm for X
+     * @param o_player algorithm for O
+     * @param agents agents of the environment for X and O, the trained Q-Learning agents among them are shared
+     * @param threads number of worker threads
+     */
+    public TicTacToe_Tournament(TicTacToe_Env env, String x_player, String o_player, TicTacToe_Agent[] agents, int threads)
+    {
+        this.env = env;
+        this.x_player = x_player;
+        this.o_player = o_player;
+        this.trained = agents.clone();
+        this.threads = Math.max(1,threads);
+        for (TicTacToe_Agent agent : trained){
+            if (agent instanceof QLearning) ((QLearning)agent).awaitTraining();
+        }
+    }
+
+    /**
+     * Agent of a worker: the shared trained Q-Learning agent or a new agent of its own.
+     */
+    private TicTacToe_Agent agent(int i, char player, String ident)
+    {
+        if (trained[i] instanceof QLearning) return trained[i];
+        return env.produceAgent(player,ident);
+    }
+
+    /**
+     * Lets the agents compete against each other for each step of the parameter interval. The parameter is
+     * the number of rollouts of the agents that are Monte-Carlo methods.
+     * @param games Number of games that the agents play against each other per parameterstep.
+     * @param parameterMin Start of the parameter test interval (e.g. rollouts)
+     * @param parameterMax End of the parameter test interval (e.g. rollouts)
+     * @param parameterStep Step size of the parameter test.
+     * @param countedPlayer Player whose results are counted.
+     * @param jfxLogger logger for the results (may be null)
+     * @return number of games won by the counted player per parameter step
+     */
+    public int[] run(int games, int parameterMin, int parameterMax, int parameterStep, char countedPlayer, JfxChartLogger jfxLogger)
+    {
+        int steps = (parameterMax-parameterMin)/parameterStep+1;
+        int blocks = (games+BLOCK_SIZE-1)/BLOCK_SIZE;
+        this.games = games;
+        this.parameterMin = parameterMin;
+        this.parameterStep = parameterStep;
+        this.countedPlayer = (countedPlayer=='x') ? 0 : 1;
+        this.jfxLogger = jfxLogger;
+        results = new AtomicIntegerArray(3*steps);
+        openBlocks = new AtomicIntegerArray(steps);
+        published = 0;
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int step=0;step<steps;step++){
+            openBlocks.set(step,blocks);
+            for (int b=0;b<blocks;b++){
+                final int s = step;
+                final int n = Math.min(BLOCK_SIZE,games-b*BLOCK_SIZE);
+                workers.execute(new Runnable(){
+                    @Override
+                    public void run()
+                    {
+                        playBlock(s,n);
+                    }
+                });
+            }
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE,TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        int[] won = new int[steps];
+        for (int step=0;step<steps;step++) won[step] = results.get(3*step+this.countedPlayer);
+        return won;
+    }
+
+    /**
+     * Plays a block of games of a parameter step with the agents of the current worker.
+     * @param step index of the parameter step
+     * @param numGames number of games
+     */
+    private void playBlock(int step, int numGames)
+    {
+        TicTacToe_Agent[] pair = agents.get();
+        int n = parameterMin+step*parameterStep;
+        for (TicTacToe_Agent agent : pair){
+            if (agent instanceof MonteCarlo_Rollout) ((MonteCarlo_Rollout)agent).setMaxRollouts(n);
+        }
+        char[] board = TicTacToe_Env.emptyBoard();
+        for (int g=0;g<numGames;g++){
+            Arrays.fill(board,'-');
+            char player = 'x';
+            while (true){
+                int a = pair[(player=='x') ? 0 : 1].policy(board);
+                if (((a>=0)&&(a<board.length))&&(board[a]=='-')){
+                    board[a]=player;
+                }else{
+                    System.out.println("Error! Action "+a+" is not possible!");
+                }
+                if (TicTacToe_Env.checkMatrixWon(board,a)==player){
+                    results.incrementAndGet(3*step+((player=='x') ? 0 : 1));
+                    break;
+                } else if (TicTacToe_Env.countOpenFields(board)==0) {
+                    results.incrementAndGet(3*step+2);
+                    break;
+                }
+                player = (player=='x') ? 'o' : 'x';
+            }
+        }
+        if (openBlocks.decrementAndGet(step)==0) publish();
+    }
+
+    /**
+     * Writes out the finished steps that follow the steps already written, in the order of the parameter.
+     */
+    private synchronized void publish()
+    {
+        while ((published<openBlocks.length())&&(openBlocks.get(published)==0)){
+            int step = published++;
+            int n = parameterMin+step*parameterStep;
+            int x = results.get(3*step), o = results.get(3*step+1), draw = results.get(3*step+2);
+            int won = (countedPlayer==0) ? x : o;
+            System.out.println(n+"; "+games+";"+x+";"+o+";"+draw+";"+((won*100)/games)+"%");
+            if (jfxLogger!=null) jfxLogger.append(n,won);
+        }
+    }
+}